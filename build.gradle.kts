@@ -1,5 +1,6 @@
 plugins {
     `java-library`
+    id("me.champeau.gradle.jmh") version "0.5.3"
 }
 
 group = "org.codeartisans"
@@ -10,9 +11,19 @@ dependencies {
     testImplementation("org.codeartisans:junit-toolbox:1.0")
     testImplementation("joda-time:joda-time:1.6.2")
     testImplementation("ch.qos.logback:logback-classic:1.1.2")
+    testImplementation("org.openjdk.jol:jol-core:0.16")
 }
 
 repositories {
     mavenCentral()
 }
- 
+
+jmh {
+    jmhVersion = "1.26"
+    benchmarkMode = listOf("thrpt")
+    profilers = listOf("gc")
+    fork = 1
+    warmupIterations = 3
+    iterations = 5
+    resultFormat = "JSON"
+}
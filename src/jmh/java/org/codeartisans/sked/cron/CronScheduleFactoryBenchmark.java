@@ -0,0 +1,53 @@
+/*
+ * Copyright (c) 2014, Paul Merlin. All Rights Reserved.
+ *
+ * Licensed  under the  Apache License,  Version 2.0  (the "License");
+ * you may not use  this file  except in  compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed  under the  License is distributed on an "AS IS" BASIS,
+ * WITHOUT  WARRANTIES OR CONDITIONS  OF ANY KIND, either  express  or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codeartisans.sked.cron;
+
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * One-shot CronSchedule creation from timestamps, and from the builder.
+ */
+@State( Scope.Benchmark )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+public class CronScheduleFactoryBenchmark
+{
+    private final CronScheduleFactory factory = new CronScheduleFactoryImpl();
+    private final long timestamp = Instant.parse( "2014-01-12T10:15:30.250Z" ).toEpochMilli();
+
+    @Benchmark
+    public CronSchedule newInstanceFromTimestamp()
+    {
+        return factory.newInstance( timestamp );
+    }
+
+    @Benchmark
+    public CronSchedule newInstanceFromBuilder()
+    {
+        return new CronScheduleBuilder()
+            .seconds( 0 )
+            .minutesBetween( 0, 59, 15 )
+            .hoursBetween( 9, 17 )
+            .daysOfWeekBetween( 1, 5 )
+            .build();
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) 2014, Paul Merlin. All Rights Reserved.
+ *
+ * Licensed  under the  Apache License,  Version 2.0  (the "License");
+ * you may not use  this file  except in  compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed  under the  License is distributed on an "AS IS" BASIS,
+ * WITHOUT  WARRANTIES OR CONDITIONS  OF ANY KIND, either  express  or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codeartisans.sked.cron;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Next run, last run and matching computation over a corpus of expression shapes.
+ */
+@State( Scope.Benchmark )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+public class CronScheduleNextFireBenchmark
+{
+    @Param(
+         {
+            "@minutely",            // dense
+            "*/15 * * * * *",       // fixed period
+            "0 0 9 ? * MON",        // sparse day of week
+            "0 0 0 29 2 *",         // february 29th
+            "0 30 6 1 * * 2090",    // year bounded
+            "0 0 0 29 2 1"          // near impossible, february 29th on a monday
+    } )
+    public String expression;
+
+    private CronSchedule schedule;
+    private long start;
+    private ZoneId zone;
+
+    @Setup
+    public void setup()
+    {
+        schedule = new CronSchedule( expression );
+        start = Instant.parse( "2014-01-12T10:15:30.250Z" ).toEpochMilli();
+        zone = ZoneId.of( "Europe/Paris" );
+    }
+
+    @Benchmark
+    public Long firstRunAfter()
+    {
+        return schedule.firstRunAfter( start );
+    }
+
+    @Benchmark
+    public long nextFire()
+    {
+        return schedule.nextFire( start, zone );
+    }
+
+    @Benchmark
+    public long lastRunBefore()
+    {
+        return schedule.lastRunBefore( start, zone );
+    }
+
+    @Benchmark
+    public boolean matches()
+    {
+        return schedule.matches( start, zone );
+    }
+}
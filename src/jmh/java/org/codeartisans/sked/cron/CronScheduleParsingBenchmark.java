@@ -0,0 +1,70 @@
+/*
+ * Copyright (c) 2014, Paul Merlin. All Rights Reserved.
+ *
+ * Licensed  under the  Apache License,  Version 2.0  (the "License");
+ * you may not use  this file  except in  compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed  under the  License is distributed on an "AS IS" BASIS,
+ * WITHOUT  WARRANTIES OR CONDITIONS  OF ANY KIND, either  express  or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codeartisans.sked.cron;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Cron expression parsing, from validation to loaded CronSchedule.
+ */
+@State( Scope.Benchmark )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+public class CronScheduleParsingBenchmark
+{
+    @Param(
+         {
+            "@minutely",
+            "0 0 9 ? * MON",
+            "2-4,10-30/2 */2 * * * * *",
+            "0 0 23 ? * MON-fRi",
+            "0 2/3 1,9,22 11-26 1-6 ? 2003"
+    } )
+    public String expression;
+
+    private byte[] bytes;
+
+    @Setup
+    public void setup()
+    {
+        bytes = new CronSchedule( expression ).toBytes();
+    }
+
+    @Benchmark
+    public boolean isExpressionValid()
+    {
+        return CronSchedule.isExpressionValid( expression );
+    }
+
+    @Benchmark
+    public CronSchedule newCronSchedule()
+    {
+        return new CronSchedule( expression );
+    }
+
+    @Benchmark
+    public CronSchedule fromBytes()
+    {
+        return CronSchedule.fromBytes( bytes );
+    }
+}
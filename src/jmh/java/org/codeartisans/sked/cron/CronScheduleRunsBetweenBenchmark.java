@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 2014, Paul Merlin. All Rights Reserved.
+ *
+ * Licensed  under the  Apache License,  Version 2.0  (the "License");
+ * you may not use  this file  except in  compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed  under the  License is distributed on an "AS IS" BASIS,
+ * WITHOUT  WARRANTIES OR CONDITIONS  OF ANY KIND, either  express  or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codeartisans.sked.cron;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Enumeration of runs over a two years window, sequential and parallel, and counting without enumeration.
+ */
+@State( Scope.Benchmark )
+@OutputTimeUnit( TimeUnit.SECONDS )
+public class CronScheduleRunsBetweenBenchmark
+{
+    @Param(
+         {
+            "* * * * * *",          // every second, 63 millions runs
+            "0 * * * * *"           // every minute, one million runs
+    } )
+    public String expression;
+
+    private CronSchedule schedule;
+    private long from;
+    private long to;
+    private ZoneId zone;
+
+    @Setup
+    public void setup()
+    {
+        schedule = new CronSchedule( expression );
+        from = Instant.parse( "2014-01-01T00:00:00Z" ).toEpochMilli();
+        to = Instant.parse( "2016-01-01T00:00:00Z" ).toEpochMilli();
+        zone = ZoneId.of( "Europe/Paris" );
+    }
+
+    @Benchmark
+    public long sequential()
+    {
+        return schedule.runsBetween( from, to, zone ).count();
+    }
+
+    @Benchmark
+    public long parallel()
+    {
+        return schedule.runsBetween( from, to, zone ).parallel().count();
+    }
+
+    @Benchmark
+    public long countRunsBetween()
+    {
+        return schedule.countRunsBetween( from, to, zone );
+    }
+}
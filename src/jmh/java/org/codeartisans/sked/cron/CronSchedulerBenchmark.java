@@ -0,0 +1,181 @@
+/*
+ * Copyright (c) 2014, Paul Merlin. All Rights Reserved.
+ *
+ * Licensed  under the  Apache License,  Version 2.0  (the "License");
+ * you may not use  this file  except in  compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed  under the  License is distributed on an "AS IS" BASIS,
+ * WITHOUT  WARRANTIES OR CONDITIONS  OF ANY KIND, either  express  or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codeartisans.sked.cron;
+
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Dispatching registered schedules with the timing wheel of CronScheduler, against a priority queue.
+ *
+ * Schedules run every minute, every hour or every day at spread seconds. Dispatch benchmarks advance time by one
+ * minute, expiring due timers and re-arming them with the next run of their schedule. The coalesced dispatch has one
+ * CronTrigger per distinct schedule, fanning out to its jobs, instead of one timer per job. Cancel benchmarks remove a
+ * timer and add it back.
+ */
+@State( Scope.Benchmark )
+@OutputTimeUnit( TimeUnit.SECONDS )
+public class CronSchedulerBenchmark
+{
+    private static final class ScheduledTimer
+        extends CronTimer
+    {
+        private final CronSchedule schedule;
+
+        private ScheduledTimer( CronSchedule schedule )
+        {
+            this.schedule = schedule;
+        }
+
+        private long nextRunAfter( long epochSecond )
+        {
+            return schedule.nextFire( epochSecond * 1000, ZoneOffset.UTC ) / 1000;
+        }
+    }
+
+    @Param(
+         {
+            "100000",
+            "1000000"
+    } )
+    public int count;
+
+    private ScheduledTimer[] timers;
+    private ScheduledTimer[] queued;
+    private CronTimingWheel wheel;
+    private CronTimingWheel coalescedWheel;
+    private long fanOut;
+    private PriorityQueue<ScheduledTimer> queue;
+    private long queueNow;
+    private int cancelled;
+
+    @Setup
+    public void setup()
+    {
+        CronSchedule[] schedules = new CronSchedule[ 180 ];
+        for( int second = 0; second < 60; second++ )
+        {
+            schedules[second] = new CronSchedule( second + " * * * * *" );
+            schedules[60 + second] = new CronSchedule( second + " " + second + " * * * *" );
+            schedules[120 + second] = new CronSchedule( second + " " + second + " " + second % 24 + " * * *" );
+        }
+        long start = Instant.parse( "2014-01-12T10:15:30Z" ).getEpochSecond();
+        timers = new ScheduledTimer[ count ];
+        wheel = new CronTimingWheel( start );
+        queue = new PriorityQueue<ScheduledTimer>( count,
+                                                   ( left, right ) -> Long.compare( left.deadline, right.deadline ) );
+        queueNow = start;
+        for( int idx = 0; idx < count; idx++ )
+        {
+            ScheduledTimer timer = new ScheduledTimer( schedules[idx % schedules.length] );
+            timers[idx] = timer;
+            wheel.add( timer, timer.nextRunAfter( start ) );
+        }
+        coalescedWheel = new CronTimingWheel( start );
+        CronTrigger[] triggers = new CronTrigger[ schedules.length ];
+        for( int idx = 0; idx < schedules.length; idx++ )
+        {
+            triggers[idx] = new CronTrigger( schedules[idx] );
+        }
+        for( int idx = 0; idx < count; idx++ )
+        {
+            triggers[idx % schedules.length].add( new CronJob( null, schedules[idx % schedules.length], () ->
+                                                           {
+                                                           }, 0 ) );
+        }
+        for( CronTrigger trigger : triggers )
+        {
+            coalescedWheel.add( trigger, trigger.schedule().nextFire( start * 1000, ZoneOffset.UTC ) / 1000 );
+        }
+        queued = new ScheduledTimer[ count ];
+        for( int idx = 0; idx < count; idx++ )
+        {
+            // Queue timers are separate instances as a timer is linked in the wheel
+            queued[idx] = new ScheduledTimer( timers[idx].schedule );
+            queued[idx].deadline = timers[idx].deadline;
+            queue.offer( queued[idx] );
+        }
+    }
+
+    @Benchmark
+    public long timingWheelDispatch()
+    {
+        wheel.advance( wheel.now() + 60, timer ->
+                   {
+                       ScheduledTimer scheduled = (ScheduledTimer) timer;
+                       wheel.add( scheduled, scheduled.nextRunAfter( wheel.now() ) );
+                   } );
+        return wheel.now();
+    }
+
+    @Benchmark
+    public long coalescedDispatch()
+    {
+        coalescedWheel.advance( coalescedWheel.now() + 60, timer ->
+                            {
+                                CronTrigger trigger = (CronTrigger) timer;
+                                trigger.fire( task -> fanOut++ );
+                                long next = trigger.schedule().nextFire( coalescedWheel.now() * 1000, ZoneOffset.UTC );
+                                coalescedWheel.add( trigger, next / 1000 );
+                            } );
+        return fanOut;
+    }
+
+    @Benchmark
+    public long priorityQueueDispatch()
+    {
+        long to = queueNow + 60;
+        ScheduledTimer head = queue.peek();
+        while( head != null && head.deadline <= to )
+        {
+            queue.poll();
+            head.deadline = head.nextRunAfter( head.deadline );
+            queue.offer( head );
+            head = queue.peek();
+        }
+        queueNow = to;
+        return queueNow;
+    }
+
+    @Benchmark
+    public boolean timingWheelCancel()
+    {
+        ScheduledTimer timer = timers[cancelled++ % count];
+        long deadline = timer.deadline;
+        boolean removed = wheel.remove( timer );
+        wheel.add( timer, deadline );
+        return removed;
+    }
+
+    @Benchmark
+    public boolean priorityQueueCancel()
+    {
+        ScheduledTimer timer = queued[cancelled++ % count];
+        boolean removed = queue.remove( timer );
+        queue.offer( timer );
+        return removed;
+    }
+}
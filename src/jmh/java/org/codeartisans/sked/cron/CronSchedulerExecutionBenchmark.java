@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) 2014, Paul Merlin. All Rights Reserved.
+ *
+ * Licensed  under the  Apache License,  Version 2.0  (the "License");
+ * you may not use  this file  except in  compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed  under the  License is distributed on an "AS IS" BASIS,
+ * WITHOUT  WARRANTIES OR CONDITIONS  OF ANY KIND, either  express  or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codeartisans.sked.cron;
+
+import java.time.Instant;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Running jobs firing on the same second, whose tasks block as I/O would, on a platform thread pool and on virtual
+ * threads.
+ *
+ * Each operation expires the trigger shared by the jobs from a timing wheel, hands their runs to the executor as
+ * CronScheduler does, and waits for all the runs to complete. The virtual mode requires a runtime supporting virtual
+ * threads.
+ */
+@State( Scope.Benchmark )
+@OutputTimeUnit( TimeUnit.SECONDS )
+public class CronSchedulerExecutionBenchmark
+{
+    private static final long IO_MILLIS = 10;
+    private static final int PLATFORM_THREADS = 200;
+
+    @Param(
+         {
+            "platform",
+            "virtual"
+    } )
+    public String mode;
+
+    @Param(
+         {
+            "10000"
+    } )
+    public int fires;
+
+    private ExecutorService executor;
+    private CronTrigger trigger;
+    private CronTimingWheel wheel;
+    private volatile CountDownLatch completed;
+
+    @Setup
+    public void setup()
+    {
+        executor = "virtual".equals( mode )
+                   ? CronExecutors.newVirtualThreadPerTaskExecutor()
+                   : Executors.newFixedThreadPool( PLATFORM_THREADS );
+        CronSchedule hourly = new CronSchedule( "@hourly" );
+        Runnable io = () ->
+        {
+            try
+            {
+                Thread.sleep( IO_MILLIS );
+            }
+            catch( InterruptedException ex )
+            {
+                Thread.currentThread().interrupt();
+            }
+            completed.countDown();
+        };
+        trigger = new CronTrigger( hourly );
+        for( int idx = 0; idx < fires; idx++ )
+        {
+            trigger.add( new CronJob( null, hourly, io, 0 ) );
+        }
+        wheel = new CronTimingWheel( Instant.parse( "2014-01-12T10:00:00Z" ).getEpochSecond() );
+    }
+
+    @TearDown
+    public void tearDown()
+    {
+        executor.shutdownNow();
+    }
+
+    @Benchmark
+    public long fire()
+        throws InterruptedException
+    {
+        completed = new CountDownLatch( fires );
+        long second = wheel.now() + 3600;
+        wheel.add( trigger, second );
+        wheel.advance( second, timer -> ( (CronTrigger) timer ).fire( executor ) );
+        completed.await();
+        return wheel.now();
+    }
+}
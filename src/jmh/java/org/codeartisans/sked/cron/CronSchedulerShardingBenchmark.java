@@ -0,0 +1,146 @@
+/*
+ * Copyright (c) 2014, Paul Merlin. All Rights Reserved.
+ *
+ * Licensed  under the  Apache License,  Version 2.0  (the "License");
+ * you may not use  this file  except in  compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed  under the  License is distributed on an "AS IS" BASIS,
+ * WITHOUT  WARRANTIES OR CONDITIONS  OF ANY KIND, either  express  or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codeartisans.sked.cron;
+
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Dispatching a million jobs spread across shards, as the shards of CronScheduler do.
+ *
+ * With distinct schedules each job has its own trigger so that nothing is coalesced. With a single hot schedule, as
+ * when every job is {@literal @minutely}, jobs are coalesced into one trigger per shard. Jobs are spread across shards
+ * in turn, each shard has its own timing wheel advanced by its own thread. Each operation dispatches one minute on all
+ * shards, the runs are handed to a no-op executor so that only dispatching is measured.
+ */
+@State( Scope.Benchmark )
+@OutputTimeUnit( TimeUnit.SECONDS )
+public class CronSchedulerShardingBenchmark
+{
+    @Param(
+         {
+            "1",
+            "2",
+            "4",
+            "8"
+    } )
+    public int shards;
+
+    @Param(
+         {
+            "1000000"
+    } )
+    public int count;
+
+    @Param(
+         {
+            "false",
+            "true"
+    } )
+    public boolean hot;
+
+    private ExecutorService dispatchers;
+    private List<Callable<Long>> dispatches;
+
+    @Setup
+    public void setup()
+    {
+        CronSchedule[] schedules = new CronSchedule[ 180 ];
+        for( int second = 0; second < 60; second++ )
+        {
+            schedules[second] = new CronSchedule( second + " * * * * *" );
+            schedules[60 + second] = new CronSchedule( second + " " + second + " * * * *" );
+            schedules[120 + second] = new CronSchedule( second + " " + second + " " + second % 24 + " * * *" );
+        }
+        long start = Instant.parse( "2014-01-12T10:15:30Z" ).getEpochSecond();
+        CronTimingWheel[] wheels = new CronTimingWheel[ shards ];
+        for( int shard = 0; shard < shards; shard++ )
+        {
+            wheels[shard] = new CronTimingWheel( start );
+        }
+        CronTrigger[] hotTriggers = new CronTrigger[ shards ];
+        for( int idx = 0; idx < count; idx++ )
+        {
+            CronSchedule schedule = hot ? schedules[0] : schedules[idx % schedules.length];
+            CronTimingWheel wheel = wheels[idx % shards];
+            CronTrigger trigger = hot ? hotTriggers[idx % shards] : null;
+            if( trigger == null )
+            {
+                trigger = new CronTrigger( schedule );
+                wheel.add( trigger, schedule.nextFire( start * 1000, ZoneOffset.UTC ) / 1000 );
+                if( hot )
+                {
+                    hotTriggers[idx % shards] = trigger;
+                }
+            }
+            trigger.add( new CronJob( null, schedule, () ->
+                                  {
+                                  }, 0 ) );
+        }
+        dispatchers = Executors.newFixedThreadPool( shards );
+        dispatches = new ArrayList<Callable<Long>>( shards );
+        for( CronTimingWheel wheel : wheels )
+        {
+            dispatches.add( () ->
+            {
+                long[] runs = new long[ 1 ];
+                wheel.advance( wheel.now() + 60, timer ->
+                           {
+                               CronTrigger trigger = (CronTrigger) timer;
+                               trigger.fire( task -> runs[0]++ );
+                               long next = trigger.schedule().nextFire( wheel.now() * 1000, ZoneOffset.UTC );
+                               wheel.add( trigger, next / 1000 );
+                           } );
+                return runs[0];
+            } );
+        }
+    }
+
+    @TearDown
+    public void tearDown()
+    {
+        dispatchers.shutdownNow();
+    }
+
+    @Benchmark
+    public long dispatch()
+        throws InterruptedException, ExecutionException
+    {
+        long runs = 0;
+        for( Future<Long> shard : dispatchers.invokeAll( dispatches ) )
+        {
+            runs += shard.get();
+        }
+        return runs;
+    }
+}
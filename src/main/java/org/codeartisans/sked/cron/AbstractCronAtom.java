@@ -17,160 +17,341 @@
  */
 package org.codeartisans.sked.cron;
 
-import java.util.SortedSet;
-import java.util.TreeSet;
+import java.util.Arrays;
 
-@SuppressWarnings( "ProtectedField" )
+/**
+ * Atoms are immutable once built and are shared across schedules, see {@link CronAtomPool}.
+ */
 /* package */ abstract class AbstractCronAtom
     implements CronAtom
 {
-    protected final String atom;
-    protected final SortedSet<Integer> possibleValues = new TreeSet<Integer>();
-    private boolean ommited = false;
+    /**
+     * Possible values as a bitmask, bit N of word N / 64 is set when minAllowed() + N is a possible value.
+     */
+    private final long[] possibleValues;
+    private final boolean ommited;
+    /**
+     * Expression of this atom, rebuilt from its possible values on first use, see {@link #expression()}.
+     */
+    private String expression;
 
     @SuppressWarnings( "OverridableMethodCallInConstructor" ) // The class hierarchy is stable as all chidren in this package are final
-    /* package */ AbstractCronAtom( String atom )
+    /* package */ AbstractCronAtom( CronAtomSource source )
+    {
+        this.possibleValues = new long[ ( ( maxAllowed() - minAllowed() ) >> 6 ) + 1 ];
+        this.ommited = source.nextAtom( this );
+        afterParseAtom();
+    }
+
+    /**
+     * Used to implement the ? special char handling for DayOfWeek and DayOfMonth.
+     * @return If this atom can be ommited
+     */
+    protected boolean canBeOmmited()
+    {
+        return false;
+    }
+
+    protected void afterParseAtom()
+    {
+        // NOOP
+    }
+
+    /**
+     * @return The count of possible values of this atom when it is *
+     */
+    protected int anyValuesCount()
+    {
+        return maxAllowed() - minAllowed() + 1;
+    }
+
+    /**
+     * Used to resolve names to values, the value of a name is its index plus one.
+     * @return Names allowed in this atom, null if none
+     */
+    protected String[] names()
     {
-        this.atom = atom;
-        parseAtom();
+        return null;
     }
 
-    @SuppressWarnings( "AssignmentToForLoopParameter" )
-    private void parseAtom()
+    @Override
+    public int nextValue( int start )
     {
-        if( "?".equals( atom ) )
+        int min = minAllowed();
+        int offset = start > min ? start - min : 0;
+        int wordIndex = offset >> 6;
+        if( wordIndex >= possibleValues.length )
         {
-            if( !canBeOmmited() )
+            return -1;
+        }
+        long word = possibleValues[wordIndex] & ( -1L << offset );
+        while( word == 0 )
+        {
+            if( ++wordIndex == possibleValues.length )
             {
-                throw new IllegalArgumentException( "? is not allowed in this field" );
+                return -1;
             }
-            // Ommited
-            ommited = true;
+            word = possibleValues[wordIndex];
+        }
+        return min + ( wordIndex << 6 ) + Long.numberOfTrailingZeros( word );
+    }
+
+    @Override
+    public int previousValue( int start )
+    {
+        int min = minAllowed();
+        if( start < min )
+        {
+            return -1;
         }
-        else if( "*".equals( atom ) )
+        int offset = Math.min( start, maxAllowed() ) - min;
+        int wordIndex = offset >> 6;
+        long word = possibleValues[wordIndex] & ( -1L >>> ( 63 - ( offset & 63 ) ) );
+        while( word == 0 )
         {
-            // All values
-            addRangeToPossibleValues( minAllowed(), maxAllowed() );
+            if( --wordIndex < 0 )
+            {
+                return -1;
+            }
+            word = possibleValues[wordIndex];
         }
-        else if( !containsSpecialChars( atom ) )
+        return min + ( wordIndex << 6 ) + 63 - Long.numberOfLeadingZeros( word );
+    }
+
+    @Override
+    public boolean matches( int value )
+    {
+        return ommited || isPossibleValue( value );
+    }
+
+    @Override
+    public long valuesMask()
+    {
+        if( ommited )
         {
-            // Simple numeric value
-            possibleValues.add( Integer.valueOf( atom ) );
+            return ( -1L >>> ( 63 - maxAllowed() ) ) & ( -1L << minAllowed() );
         }
-        else
+        return possibleValues[0] << minAllowed();
+    }
+
+    @Override
+    public int minAllowed()
+    {
+        return 0;
+    }
+
+    @Override
+    public abstract int maxAllowed();
+
+    /**
+     * Bounds must have been validated by the caller.
+     */
+    /* package */ final void addPossibleValues( int start, int stop, int step )
+    {
+        int min = minAllowed();
+        int startOffset = start - min;
+        int stopOffset = stop - min;
+        if( step == 1 )
         {
-            String[] subAtomSet = atom.split( "," );
-            for( String subAtom : subAtomSet )
+            // Whole words at once
+            for( int wordIndex = startOffset >> 6; wordIndex <= stopOffset >> 6; wordIndex++ )
             {
-                int step = 1;
-                int stepMarkerIndex = subAtom.indexOf( "/" );
-                if( stepMarkerIndex > 0 )
+                long mask = -1L;
+                if( wordIndex == startOffset >> 6 )
                 {
-                    // Stepped atom
-                    step = Integer.valueOf( subAtom.substring( stepMarkerIndex + 1 ) );
-                    subAtom = subAtom.substring( 0, stepMarkerIndex );
+                    mask &= -1L << startOffset;
                 }
-                if( "*".equals( subAtom ) )
+                if( wordIndex == stopOffset >> 6 )
                 {
-                    // */step atom
-                    addSteppedRangeToPossibleValues( minAllowed(), maxAllowed(), step );
-                }
-                else if( subAtom.contains( "-" ) )
-                {
-                    // <range> atom maybe stepped
-                    int rangeMarkerIndex = subAtom.indexOf( "-" );
-                    int start = Integer.valueOf( subAtom.substring( 0, rangeMarkerIndex ) );
-                    int stop = Integer.valueOf( subAtom.substring( rangeMarkerIndex + 1 ) );
-                    addSteppedRangeToPossibleValues( start, stop, step );
-                }
-                else
-                {
-                    if( step == 1 )
-                    {
-                        // SubAtom is a simple numeric value
-                        possibleValues.add( Integer.valueOf( subAtom ) );
-                    }
-                    else
-                    {
-                        // SubAtom <number>/<step> means start a range at <number> and use <step>
-                        addSteppedRangeToPossibleValues( Integer.valueOf( subAtom ), maxAllowed(), step );
-                    }
+                    mask &= -1L >>> ( 63 - ( stopOffset & 63 ) );
                 }
+                possibleValues[wordIndex] |= mask;
+            }
+        }
+        else
+        {
+            for( int offset = startOffset; offset <= stopOffset; offset += step )
+            {
+                possibleValues[offset >> 6] |= 1L << offset;
             }
         }
-        afterParseAtom();
     }
 
     /**
-     * Used to implement the ? special char handling for DayOfWeek and DayOfMonth.
-     * @return If this atom can be ommited
+     * Expression of this atom rebuilt from its possible values: ? if ommited, * if all values are possible,
+     * first-last/step for more than two evenly stepped values, and a list of values and ranges otherwise.
+     *
+     * Atoms are interned, so it is built once per distinct atom. Racing threads build equal strings.
+     *
+     * @return The expression of this atom
      */
-    protected boolean canBeOmmited()
+    @Override
+    public final String expression()
     {
-        return false;
+        String atomExpression = expression;
+        if( atomExpression == null )
+        {
+            atomExpression = buildExpression();
+            expression = atomExpression;
+        }
+        return atomExpression;
     }
 
-    protected void afterParseAtom()
+    private String buildExpression()
     {
-        // NOOP
+        if( ommited )
+        {
+            return "?";
+        }
+        int count = possibleValuesCount();
+        if( count == anyValuesCount() )
+        {
+            return "*";
+        }
+        int first = nextValue( minAllowed() );
+        if( count > 2 )
+        {
+            int step = nextValue( first + 1 ) - first;
+            int last = first + ( count - 1 ) * step;
+            if( step > 1 && previousValue( maxAllowed() ) == last && isStepped( first, last, step ) )
+            {
+                return first + "-" + last + "/" + step;
+            }
+        }
+        StringBuilder values = new StringBuilder();
+        for( int value = first; value != -1; )
+        {
+            int end = value;
+            while( isPossibleValue( end + 1 ) )
+            {
+                end++;
+            }
+            values.append( value );
+            if( end == value + 1 )
+            {
+                values.append( ',' ).append( end );
+            }
+            else if( end > value + 1 )
+            {
+                values.append( '-' ).append( end );
+            }
+            value = nextValue( end + 1 );
+            if( value != -1 )
+            {
+                values.append( ',' );
+            }
+        }
+        return values.toString();
     }
 
-    @Override
-    public int nextValue( int start )
+    private boolean isStepped( int first, int last, int step )
     {
-        SortedSet<Integer> tail = possibleValues.tailSet( start );
-        if( tail.isEmpty() )
+        for( int value = first + step; value < last; value += step )
         {
-            return -1;
+            if( !isPossibleValue( value ) )
+            {
+                return false;
+            }
         }
-        return tail.first();
+        return true;
     }
 
-    @Override
-    public int minAllowed()
+    /**
+     * @return true if this atom is ommited using ?
+     */
+    /* package */ final boolean isOmmited()
     {
-        return 0;
+        return ommited;
     }
 
-    @Override
-    public abstract int maxAllowed();
+    /**
+     * @param index Index of the word
+     * @return      Word of the possible values bitmask, see {@link #possibleValues}
+     */
+    /* package */ final long possibleValuesWord( int index )
+    {
+        return possibleValues[index];
+    }
 
-    private static final char[] SPECIAL_CHARS = new char[]
+    /**
+     * @param index Index of the word
+     * @param word  Word of possible values to add, see {@link #possibleValues}
+     * @throws IllegalArgumentException if the word has values out of range
+     */
+    /* package */ final void addPossibleValuesWord( int index, long word )
     {
-        '*', ',', '/', '-'
-    };
+        int lastOffset = maxAllowed() - minAllowed();
+        long allowed = index < lastOffset >> 6
+                       ? -1L
+                       : index == lastOffset >> 6 ? -1L >>> ( 63 - ( lastOffset & 63 ) ) : 0;
+        if( ( word & ~allowed ) != 0 )
+        {
+            throw new IllegalArgumentException( "Values out of range [" + minAllowed() + "-" + maxAllowed() + "]" );
+        }
+        possibleValues[index] |= word;
+    }
 
-    private boolean containsSpecialChars( String atom )
+    protected final void addPossibleValue( int value )
     {
-        for( char specialChar : SPECIAL_CHARS )
+        if( value < minAllowed() || value > maxAllowed() )
         {
-            if( atom.indexOf( specialChar ) != -1 )
-            {
-                return true;
-            }
+            throw new IllegalArgumentException( "Value " + value + " is out of range [" + minAllowed() + "-"
+                                                + maxAllowed() + "]" );
         }
-        return false;
+        int offset = value - minAllowed();
+        possibleValues[offset >> 6] |= 1L << offset;
     }
 
-    private void addRangeToPossibleValues( int start, int stop )
+    protected final void removePossibleValue( int value )
     {
-        addSteppedRangeToPossibleValues( start, stop, 1 );
+        if( value >= minAllowed() && value <= maxAllowed() )
+        {
+            int offset = value - minAllowed();
+            possibleValues[offset >> 6] &= ~( 1L << offset );
+        }
     }
 
-    private void addSteppedRangeToPossibleValues( int start, int stop, int step )
+    protected final boolean isPossibleValue( int value )
     {
-        for( int idx = start; idx <= stop; idx += step )
+        if( value < minAllowed() || value > maxAllowed() )
         {
-            possibleValues.add( idx );
+            return false;
         }
+        int offset = value - minAllowed();
+        return ( possibleValues[offset >> 6] & ( 1L << offset ) ) != 0;
     }
 
     /**
-     * @return The atom string used to create this instance.
+     * @return The count of possible values of this atom
      */
+    protected final int possibleValuesCount()
+    {
+        int count = 0;
+        for( long word : possibleValues )
+        {
+            count += Long.bitCount( word );
+        }
+        return count;
+    }
+
+    @Override
+    public final boolean equals( Object obj )
+    {
+        if( this == obj )
+        {
+            return true;
+        }
+        if( obj == null || getClass() != obj.getClass() )
+        {
+            return false;
+        }
+        AbstractCronAtom other = (AbstractCronAtom) obj;
+        return ommited == other.ommited && Arrays.equals( possibleValues, other.possibleValues );
+    }
+
     @Override
-    public final String toString()
+    public final int hashCode()
     {
-        return atom;
+        return 31 * ( 31 * getClass().hashCode() + Arrays.hashCode( possibleValues ) ) + ( ommited ? 1 : 0 );
     }
 }
@@ -0,0 +1,157 @@
+/*
+ * Copyright (c) 2014, Paul Merlin. All Rights Reserved.
+ *
+ * Licensed  under the  Apache License,  Version 2.0  (the "License");
+ * you may not use  this file  except in  compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed  under the  License is distributed on an "AS IS" BASIS,
+ * WITHOUT  WARRANTIES OR CONDITIONS  OF ANY KIND, either  express  or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codeartisans.sked.cron;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * CronScheduleFactory that shares CronSchedule instances created from cron expressions.
+ *
+ * Instances are interned by canonical expression, so equivalent expressions such as {@literal @daily} and
+ * {@literal 0 0 0 * * *} share the same instance. The cache is bounded and evicts entries using the CLOCK policy, an
+ * approximation of least recently used where lookups only flip a flag. Lookups are lock free, only insertions beyond
+ * the maximum size take a lock to evict.
+ *
+ * Schedules created from dates and timestamps are one-shot and never cached.
+ */
+public class CachingCronScheduleFactory
+    extends CronScheduleFactoryImpl
+{
+    private static final class Entry
+    {
+        private final String key;
+        private final CronSchedule schedule;
+        private volatile boolean referenced = true;
+
+        private Entry( String key, CronSchedule schedule )
+        {
+            this.key = key;
+            this.schedule = schedule;
+        }
+    }
+
+    private final int maximumSize;
+    private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<String, Entry>();
+    private final Queue<Entry> clock = new ConcurrentLinkedQueue<Entry>();
+    private final Object evictionLock = new Object();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * @param maximumSize   Maximum number of cached entries, an expression that is not canonical uses two entries
+     */
+    public CachingCronScheduleFactory( int maximumSize )
+    {
+        if( maximumSize <= 0 )
+        {
+            throw new IllegalArgumentException( "Maximum size must be strictly positive" );
+        }
+        this.maximumSize = maximumSize;
+    }
+
+    @Override
+    public CronSchedule newInstance( String cronExpression )
+    {
+        if( cronExpression == null )
+        {
+            return super.newInstance( cronExpression );
+        }
+        Entry entry = entries.get( cronExpression );
+        if( entry != null )
+        {
+            entry.referenced = true;
+            hits.increment();
+            return entry.schedule;
+        }
+        misses.increment();
+        CronSchedule schedule = super.newInstance( cronExpression );
+        String canonical = schedule.toString();
+        if( !canonical.equals( cronExpression ) )
+        {
+            schedule = intern( canonical, schedule );
+        }
+        return intern( cronExpression, schedule );
+    }
+
+    public long hitCount()
+    {
+        return hits.sum();
+    }
+
+    public long missCount()
+    {
+        return misses.sum();
+    }
+
+    public long evictionCount()
+    {
+        return evictions.sum();
+    }
+
+    public int size()
+    {
+        return entries.size();
+    }
+
+    private CronSchedule intern( String key, CronSchedule schedule )
+    {
+        Entry entry = new Entry( key, schedule );
+        Entry existing = entries.putIfAbsent( key, entry );
+        if( existing != null )
+        {
+            existing.referenced = true;
+            return existing.schedule;
+        }
+        clock.offer( entry );
+        if( entries.size() > maximumSize )
+        {
+            evict();
+        }
+        return schedule;
+    }
+
+    private void evict()
+    {
+        synchronized( evictionLock )
+        {
+            while( entries.size() > maximumSize )
+            {
+                Entry candidate = clock.poll();
+                if( candidate == null )
+                {
+                    return;
+                }
+                if( candidate.referenced )
+                {
+                    // Second chance
+                    candidate.referenced = false;
+                    clock.offer( candidate );
+                }
+                else if( entries.remove( candidate.key, candidate ) )
+                {
+                    evictions.increment();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,190 @@
+/*
+ * Copyright (c) 2014, Paul Merlin. All Rights Reserved.
+ *
+ * Licensed  under the  Apache License,  Version 2.0  (the "License");
+ * you may not use  this file  except in  compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed  under the  License is distributed on an "AS IS" BASIS,
+ * WITHOUT  WARRANTIES OR CONDITIONS  OF ANY KIND, either  express  or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codeartisans.sked.cron;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.zone.ZoneOffsetTransition;
+import java.time.zone.ZoneRules;
+
+/**
+ * Proleptic gregorian civil date arithmetic on epoch days and local epoch seconds.
+ *
+ * Local epoch seconds are seconds since 1970-01-01T00:00:00 in local time, ie. an epoch second as if the zone offset
+ * was always zero. Dates are packed into a single long by {@link #civilFromDays(long)} to stay allocation free.
+ */
+/* package */ final class CivilTime
+{
+    /* package */ static final int SECONDS_PER_DAY = 86400;
+
+    /* package */ static boolean isLeapYear( int year )
+    {
+        return ( year & 3 ) == 0 && ( year % 100 != 0 || year % 400 == 0 );
+    }
+
+    /* package */ static int daysInMonth( int year, int month )
+    {
+        switch( month )
+        {
+            case 2:
+                return isLeapYear( year ) ? 29 : 28;
+            case 4:
+            case 6:
+            case 9:
+            case 11:
+                return 30;
+            default:
+                return 31;
+        }
+    }
+
+    /**
+     * @return Days since 1970-01-01 of the given civil date
+     */
+    /* package */ static long daysFromCivil( int year, int month, int dayOfMonth )
+    {
+        // See http://howardhinnant.github.io/date_algorithms.html#days_from_civil
+        long y = month <= 2 ? year - 1 : year;
+        long era = Math.floorDiv( y, 400 );
+        long yearOfEra = y - era * 400;
+        long dayOfYear = ( 153 * ( month + ( month > 2 ? -3 : 9 ) ) + 2 ) / 5 + dayOfMonth - 1;
+        long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097 + dayOfEra - 719468;
+    }
+
+    /**
+     * @return The civil date of the given epoch day, packed, see {@link #year(long)}, {@link #month(long)} and
+     *         {@link #dayOfMonth(long)}
+     */
+    /* package */ static long civilFromDays( long epochDay )
+    {
+        // See http://howardhinnant.github.io/date_algorithms.html#civil_from_days
+        long z = epochDay + 719468;
+        long era = Math.floorDiv( z, 146097 );
+        long dayOfEra = z - era * 146097;
+        long yearOfEra = ( dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096 ) / 365;
+        long dayOfYear = dayOfEra - ( 365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100 );
+        long mp = ( 5 * dayOfYear + 2 ) / 153;
+        long dayOfMonth = dayOfYear - ( 153 * mp + 2 ) / 5 + 1;
+        long month = mp < 10 ? mp + 3 : mp - 9;
+        long year = yearOfEra + era * 400 + ( month <= 2 ? 1 : 0 );
+        return ( year << 9 ) | ( month << 5 ) | dayOfMonth;
+    }
+
+    /* package */ static int year( long civil )
+    {
+        return (int) ( civil >> 9 );
+    }
+
+    /* package */ static int month( long civil )
+    {
+        return (int) ( civil >> 5 ) & 0xF;
+    }
+
+    /* package */ static int dayOfMonth( long civil )
+    {
+        return (int) civil & 0x1F;
+    }
+
+    /**
+     * @return Day of week of the given epoch day, from 1 for monday to 7 for sunday
+     */
+    /* package */ static int dayOfWeek( long epochDay )
+    {
+        // 1970-01-01 was a thursday
+        return Math.floorMod( epochDay + 3, 7 ) + 1;
+    }
+
+    /**
+     * @return Local epoch second of the given epoch milliseconds in the given zone, truncated to the second
+     */
+    /* package */ static long toLocalEpochSecond( long epochMillis, ZoneRules rules )
+    {
+        long epochSecond = Math.floorDiv( epochMillis, 1000 );
+        ZoneOffset offset = rules.isFixedOffset()
+                            ? rules.getOffset( Instant.EPOCH )
+                            : rules.getOffset( Instant.ofEpochSecond( epochSecond ) );
+        return epochSecond + offset.getTotalSeconds();
+    }
+
+    /**
+     * Local epoch second from which to search for local runs resolving strictly after the given epoch milliseconds.
+     *
+     * It is the local epoch second following the given time, except in the first occurence of local times repeated by
+     * an overlap. As they resolve to their second occurence, see {@link #toEpochSecond(long, ZoneRules)}, the local
+     * times of the overlap before the given time still resolve after it, so the search starts at the overlap start.
+     *
+     * @return Local epoch second to start searching forward from
+     */
+    /* package */ static long toNextLocalEpochSecond( long epochMillis, ZoneRules rules )
+    {
+        if( rules.isFixedOffset() )
+        {
+            return Math.floorDiv( epochMillis, 1000 ) + rules.getOffset( Instant.EPOCH ).getTotalSeconds() + 1;
+        }
+        Instant instant = Instant.ofEpochSecond( Math.floorDiv( epochMillis, 1000 ) );
+        int offset = rules.getOffset( instant ).getTotalSeconds();
+        if( rules.getOffset( instant.plusSeconds( SECONDS_PER_DAY ) ).getTotalSeconds() < offset
+            && isInOverlapFirstOccurence( instant, rules ) )
+        {
+            ZoneOffsetTransition overlap = rules.nextTransition( instant );
+            return overlap.toEpochSecond() + overlap.getOffsetAfter().getTotalSeconds();
+        }
+        return instant.getEpochSecond() + offset + 1;
+    }
+
+    /**
+     * @return true if the given instant is in the first occurence of the local times repeated by an overlap
+     */
+    /* package */ static boolean isInOverlapFirstOccurence( Instant instant, ZoneRules rules )
+    {
+        ZoneOffsetTransition overlap = rules.nextTransition( instant );
+        return overlap != null && overlap.isOverlap()
+               && instant.getEpochSecond() >= overlap.toEpochSecond() + overlap.getDuration().getSeconds();
+    }
+
+    /**
+     * Local times in a gap are shifted forward by the length of the gap and local times in an overlap resolve to the
+     * offset after the transition, as {@link java.util.GregorianCalendar} does.
+     *
+     * @return Epoch second of the given local epoch second in the given zone
+     */
+    /* package */ static long toEpochSecond( long localEpochSecond, ZoneRules rules )
+    {
+        if( rules.isFixedOffset() )
+        {
+            return localEpochSecond - rules.getOffset( Instant.EPOCH ).getTotalSeconds();
+        }
+        LocalDateTime local = LocalDateTime.ofEpochSecond( localEpochSecond, 0, ZoneOffset.UTC );
+        ZoneOffsetTransition transition = rules.getTransition( local );
+        if( transition == null )
+        {
+            return localEpochSecond - rules.getOffset( local ).getTotalSeconds();
+        }
+        if( transition.isGap() )
+        {
+            return localEpochSecond - transition.getOffsetBefore().getTotalSeconds();
+        }
+        return localEpochSecond - transition.getOffsetAfter().getTotalSeconds();
+    }
+
+    private CivilTime()
+    {
+    }
+}
@@ -27,6 +27,28 @@ package org.codeartisans.sked.cron;
      */
     int nextValue( int start );
 
+    /**
+     * Find the previous occurence of this atom.
+     *
+     * @param start     From where this atom start searching backward, this is inclusive.
+     * @return          The previous occurence of this atom, -1 if none.
+     */
+    int previousValue( int start );
+
+    /**
+     * @param value     Value to test
+     * @return          true if the given value is a possible value of this atom or if this atom was ommited
+     */
+    boolean matches( int value );
+
+    /**
+     * Only available for atoms whose maximum allowed value is lower than 64.
+     *
+     * @return          Possible values of this atom as a bitmask where bit N is set when N is a possible value, all
+     *                  allowed values if this atom was ommited
+     */
+    long valuesMask();
+
     /**
      * @return The minimum allowed value for this atom
      */
@@ -36,4 +58,9 @@ package org.codeartisans.sked.cron;
      * @return The maximum allowed value for this atom
      */
     int maxAllowed();
+
+    /**
+     * @return The expression of this atom, rebuilt from its possible values
+     */
+    String expression();
 }
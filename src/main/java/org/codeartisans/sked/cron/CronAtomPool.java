@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) 2014, Paul Merlin. All Rights Reserved.
+ *
+ * Licensed  under the  Apache License,  Version 2.0  (the "License");
+ * you may not use  this file  except in  compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed  under the  License is distributed on an "AS IS" BASIS,
+ * WITHOUT  WARRANTIES OR CONDITIONS  OF ANY KIND, either  express  or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codeartisans.sked.cron;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Weak interning pool of atoms, by atom type and possible values.
+ *
+ * Most atoms are *, 0 or a handful of common patterns, interning them lets all schedules share a small set of atom
+ * instances. Atoms no longer used by any schedule are garbage collected.
+ *
+ * The pool is a concurrent map of weak references to atoms, equal when their atoms are, so that schedules are built
+ * concurrently without contending on a lock. Entries of collected atoms are removed on later interning.
+ */
+/* package */ final class CronAtomPool
+{
+    private static final ConcurrentMap<AtomReference, AtomReference> POOL
+        = new ConcurrentHashMap<AtomReference, AtomReference>();
+    private static final ReferenceQueue<AbstractCronAtom> COLLECTED = new ReferenceQueue<AbstractCronAtom>();
+
+    /**
+     * @param atom  Freshly built atom
+     * @return      The pooled atom equal to the given one, the given one if none
+     */
+    @SuppressWarnings( "unchecked" )
+    /* package */ static <T extends AbstractCronAtom> T intern( T atom )
+    {
+        removeCollected();
+        AtomReference probe = new AtomReference( atom, null );
+        AtomReference reference = POOL.get( probe );
+        while( true )
+        {
+            AbstractCronAtom pooled = reference == null ? null : reference.get();
+            if( pooled != null )
+            {
+                // Equal atoms have the same type
+                return (T) pooled;
+            }
+            if( reference != null )
+            {
+                // Collected, not removed yet
+                POOL.remove( reference, reference );
+            }
+            AtomReference added = new AtomReference( atom, COLLECTED );
+            reference = POOL.putIfAbsent( added, added );
+            if( reference == null )
+            {
+                return atom;
+            }
+        }
+    }
+
+    private static void removeCollected()
+    {
+        for( Object collected = COLLECTED.poll(); collected != null; collected = COLLECTED.poll() )
+        {
+            POOL.remove( collected, collected );
+        }
+    }
+
+    /**
+     * Weak reference equal to the references of equal atoms, a collected reference is only equal to itself.
+     */
+    private static final class AtomReference
+        extends WeakReference<AbstractCronAtom>
+    {
+        private final int hashCode;
+
+        private AtomReference( AbstractCronAtom atom, ReferenceQueue<AbstractCronAtom> queue )
+        {
+            super( atom, queue );
+            this.hashCode = atom.hashCode();
+        }
+
+        @Override
+        public boolean equals( Object obj )
+        {
+            if( this == obj )
+            {
+                return true;
+            }
+            if( !( obj instanceof AtomReference ) )
+            {
+                return false;
+            }
+            AbstractCronAtom atom = get();
+            return atom != null && atom.equals( ( (AtomReference) obj ).get() );
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return hashCode;
+        }
+    }
+
+    private CronAtomPool()
+    {
+    }
+}
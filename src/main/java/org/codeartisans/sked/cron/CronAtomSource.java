@@ -0,0 +1,38 @@
+/*
+ * Copyright (c) 2014, Paul Merlin. All Rights Reserved.
+ *
+ * Licensed  under the  Apache License,  Version 2.0  (the "License");
+ * you may not use  this file  except in  compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed  under the  License is distributed on an "AS IS" BASIS,
+ * WITHOUT  WARRANTIES OR CONDITIONS  OF ANY KIND, either  express  or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codeartisans.sked.cron;
+
+/**
+ * Source of the possible values of the atoms of a schedule, in order.
+ */
+/* package */ interface CronAtomSource
+{
+    /**
+     * Fill the given atom with its possible values.
+     *
+     * @param atom  Atom being built
+     * @return      true if the atom is ommited using ?
+     */
+    boolean nextAtom( AbstractCronAtom atom );
+
+    /**
+     * @return The normalized expression of the schedule, once all atoms have been built, or null to rebuild it from
+     *         the atoms
+     */
+    String end();
+}
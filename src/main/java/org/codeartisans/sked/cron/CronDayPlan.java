@@ -0,0 +1,188 @@
+/*
+ * Copyright (c) 2014, Paul Merlin. All Rights Reserved.
+ *
+ * Licensed  under the  Apache License,  Version 2.0  (the "License");
+ * you may not use  this file  except in  compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed  under the  License is distributed on an "AS IS" BASIS,
+ * WITHOUT  WARRANTIES OR CONDITIONS  OF ANY KIND, either  express  or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codeartisans.sked.cron;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Seconds of day at which a schedule runs, as a bitmap.
+ *
+ * The hour, minute and second atoms of a schedule form a fixed set of seconds of day. Finding the next one is a bit
+ * scan in the word of the start second, then in a summary of non empty words. Plans are built from interned atoms and
+ * are themselves weakly interned by their atoms, so that schedules with the same time of day fields share a single
+ * plan. Plans are built outside of any lock, concurrent builders of the same plan race to publish theirs.
+ */
+/* package */ final class CronDayPlan
+{
+    private static final int WORDS = ( CivilTime.SECONDS_PER_DAY + 63 ) >> 6;
+    private static final ConcurrentMap<Key, PlanReference> POOL = new ConcurrentHashMap<Key, PlanReference>();
+    private static final ReferenceQueue<CronDayPlan> COLLECTED = new ReferenceQueue<CronDayPlan>();
+
+    /**
+     * @return The shared plan of the given atoms
+     */
+    /* package */ static CronDayPlan of( CronAtom hourAtom, CronAtom minuteAtom, CronAtom secondAtom )
+    {
+        for( Object collected = COLLECTED.poll(); collected != null; collected = COLLECTED.poll() )
+        {
+            POOL.remove( ( (PlanReference) collected ).key, collected );
+        }
+        Key key = new Key( hourAtom, minuteAtom, secondAtom );
+        PlanReference reference = POOL.get( key );
+        while( true )
+        {
+            CronDayPlan pooled = reference == null ? null : reference.get();
+            if( pooled != null )
+            {
+                return pooled;
+            }
+            CronDayPlan plan = new CronDayPlan( hourAtom, minuteAtom, secondAtom );
+            PlanReference added = new PlanReference( plan, key );
+            boolean published = reference == null
+                                ? POOL.putIfAbsent( key, added ) == null
+                                : POOL.replace( key, reference, added );
+            if( published )
+            {
+                return plan;
+            }
+            reference = POOL.get( key );
+        }
+    }
+
+    /**
+     * Bit N of word N / 64 is set when the schedule runs at second of day N.
+     */
+    private final long[] seconds;
+    /**
+     * Bit N of word N / 64 is set when word N of seconds is not empty.
+     */
+    private final long[] summary;
+
+    private CronDayPlan( CronAtom hourAtom, CronAtom minuteAtom, CronAtom secondAtom )
+    {
+        seconds = new long[ WORDS ];
+        summary = new long[ ( WORDS + 63 ) >> 6 ];
+        for( int hour = hourAtom.nextValue( 0 ); hour != -1; hour = hourAtom.nextValue( hour + 1 ) )
+        {
+            for( int minute = minuteAtom.nextValue( 0 ); minute != -1; minute = minuteAtom.nextValue( minute + 1 ) )
+            {
+                for( int second = secondAtom.nextValue( 0 ); second != -1;
+                     second = secondAtom.nextValue( second + 1 ) )
+                {
+                    int secondOfDay = hour * 3600 + minute * 60 + second;
+                    seconds[secondOfDay >> 6] |= 1L << secondOfDay;
+                    summary[secondOfDay >> 12] |= 1L << ( secondOfDay >> 6 );
+                }
+            }
+        }
+    }
+
+    /**
+     * @param start Second of day from where to search, inclusive
+     * @return      The first second of day at or after start at which the schedule runs, -1 if none
+     */
+    /* package */ int nextSecondOfDay( int start )
+    {
+        int wordIndex = start >> 6;
+        if( wordIndex >= WORDS )
+        {
+            return -1;
+        }
+        long word = seconds[wordIndex] & ( -1L << start );
+        if( word != 0 )
+        {
+            return ( wordIndex << 6 ) + Long.numberOfTrailingZeros( word );
+        }
+        // Next non empty word from the summary
+        int next = wordIndex + 1;
+        int summaryIndex = next >> 6;
+        if( summaryIndex >= summary.length )
+        {
+            return -1;
+        }
+        long words = summary[summaryIndex] & ( -1L << next );
+        while( words == 0 )
+        {
+            if( ++summaryIndex == summary.length )
+            {
+                return -1;
+            }
+            words = summary[summaryIndex];
+        }
+        wordIndex = ( summaryIndex << 6 ) + Long.numberOfTrailingZeros( words );
+        return ( wordIndex << 6 ) + Long.numberOfTrailingZeros( seconds[wordIndex] );
+    }
+
+    /**
+     * Time of day atoms of a plan.
+     */
+    private static final class Key
+    {
+        private final CronAtom hourAtom;
+        private final CronAtom minuteAtom;
+        private final CronAtom secondAtom;
+
+        private Key( CronAtom hourAtom, CronAtom minuteAtom, CronAtom secondAtom )
+        {
+            this.hourAtom = hourAtom;
+            this.minuteAtom = minuteAtom;
+            this.secondAtom = secondAtom;
+        }
+
+        @Override
+        public boolean equals( Object obj )
+        {
+            if( this == obj )
+            {
+                return true;
+            }
+            if( !( obj instanceof Key ) )
+            {
+                return false;
+            }
+            Key other = (Key) obj;
+            return hourAtom.equals( other.hourAtom )
+                   && minuteAtom.equals( other.minuteAtom )
+                   && secondAtom.equals( other.secondAtom );
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return 31 * ( 31 * hourAtom.hashCode() + minuteAtom.hashCode() ) + secondAtom.hashCode();
+        }
+    }
+
+    /**
+     * Weak reference to a pooled plan, knowing its key to remove it once collected.
+     */
+    private static final class PlanReference
+        extends WeakReference<CronDayPlan>
+    {
+        private final Key key;
+
+        private PlanReference( CronDayPlan plan, Key key )
+        {
+            super( plan, COLLECTED );
+            this.key = key;
+        }
+    }
+}
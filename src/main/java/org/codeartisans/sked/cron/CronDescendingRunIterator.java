@@ -0,0 +1,67 @@
+/*
+ * Copyright (c) 2014, Paul Merlin. All Rights Reserved.
+ *
+ * Licensed  under the  Apache License,  Version 2.0  (the "License");
+ * you may not use  this file  except in  compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed  under the  License is distributed on an "AS IS" BASIS,
+ * WITHOUT  WARRANTIES OR CONDITIONS  OF ANY KIND, either  express  or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codeartisans.sked.cron;
+
+import java.time.zone.ZoneRules;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+/**
+ * Iterates over the runs of a schedule, in descending order, by chaining backward searches.
+ */
+/* package */ final class CronDescendingRunIterator
+    implements PrimitiveIterator.OfLong
+{
+    private final CronSchedule schedule;
+    private final ZoneRules rules;
+    private final long startEpochMillis;
+    private long next;
+
+    /**
+     * @param schedule          Iterated schedule
+     * @param startEpochMillis  Start time, inclusive
+     * @param endEpochMillis    End time, exclusive, where iteration begins
+     * @param rules             Rules of the zone in which the schedule is evaluated
+     */
+    /* package */ CronDescendingRunIterator( CronSchedule schedule, long startEpochMillis, long endEpochMillis,
+                                             ZoneRules rules )
+    {
+        this.schedule = schedule;
+        this.rules = rules;
+        this.startEpochMillis = startEpochMillis;
+        this.next = schedule.lastRunBefore( endEpochMillis, rules );
+    }
+
+    @Override
+    public boolean hasNext()
+    {
+        return next != CronSchedule.NEVER_BEFORE && next >= startEpochMillis;
+    }
+
+    @Override
+    public long nextLong()
+    {
+        if( !hasNext() )
+        {
+            throw new NoSuchElementException();
+        }
+        long run = next;
+        next = schedule.lastRunBefore( run, rules );
+        return run;
+    }
+}
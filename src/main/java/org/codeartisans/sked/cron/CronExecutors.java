@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) 2014, Paul Merlin. All Rights Reserved.
+ *
+ * Licensed  under the  Apache License,  Version 2.0  (the "License");
+ * you may not use  this file  except in  compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed  under the  License is distributed on an "AS IS" BASIS,
+ * WITHOUT  WARRANTIES OR CONDITIONS  OF ANY KIND, either  express  or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codeartisans.sked.cron;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Executors suited to running cron jobs.
+ *
+ * Cron jobs are often blocking I/O, and many schedules fire on the same second, eg. every {@literal @hourly} job. A
+ * fixed pool of platform threads either delays such fires or needs as many threads as simultaneous fires. On runtimes
+ * with virtual threads, running each fire on its own virtual thread makes blocking cheap, see
+ * {@link #newVirtualThreadPerTaskExecutor()}. Use {@link CronScheduler#schedule(CronSchedule, Runnable, int)} to bound
+ * the concurrency of a job, eg. to the size of the connection pool it uses.
+ *
+ * Virtual threads are resolved at runtime so that sked still runs on older runtimes.
+ */
+@SuppressWarnings(
+     {
+        "BroadCatchBlock", "TooBroadCatch", "UseSpecificCatch"
+    } )
+public final class CronExecutors
+{
+    private static final MethodHandle NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR;
+
+    static
+    {
+        MethodHandle newVirtualThreadPerTaskExecutor;
+        try
+        {
+            newVirtualThreadPerTaskExecutor = MethodHandles.publicLookup().
+                findStatic( Executors.class, "newVirtualThreadPerTaskExecutor",
+                            MethodType.methodType( ExecutorService.class ) );
+            // Virtual threads exist as a preview feature before Java 21, where they fail unless previews are enabled
+            ( (ExecutorService) newVirtualThreadPerTaskExecutor.invokeExact() ).shutdown();
+        }
+        catch( Throwable ex )
+        {
+            newVirtualThreadPerTaskExecutor = null;
+        }
+        NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR = newVirtualThreadPerTaskExecutor;
+    }
+
+    /**
+     * @return true if the runtime supports virtual threads, ie. Java 21 or later, or an earlier runtime with them
+     *         enabled as a preview feature
+     */
+    public static boolean isVirtualThreadSupported()
+    {
+        return NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR != null;
+    }
+
+    /**
+     * @return A new executor running each task on a new virtual thread
+     * @throws UnsupportedOperationException if the runtime does not support virtual threads
+     */
+    public static ExecutorService newVirtualThreadPerTaskExecutor()
+    {
+        if( NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR == null )
+        {
+            throw new UnsupportedOperationException( "Virtual threads are not supported by this runtime" );
+        }
+        try
+        {
+            return (ExecutorService) NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR.invokeExact();
+        }
+        catch( RuntimeException | Error ex )
+        {
+            throw ex;
+        }
+        catch( Throwable ex )
+        {
+            throw new UnsupportedOperationException( "Virtual threads could not be used", ex );
+        }
+    }
+
+    private CronExecutors()
+    {
+    }
+}
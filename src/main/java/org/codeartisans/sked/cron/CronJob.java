@@ -0,0 +1,192 @@
+/*
+ * Copyright (c) 2014, Paul Merlin. All Rights Reserved.
+ *
+ * Licensed  under the  Apache License,  Version 2.0  (the "License");
+ * you may not use  this file  except in  compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed  under the  License is distributed on an "AS IS" BASIS,
+ * WITHOUT  WARRANTIES OR CONDITIONS  OF ANY KIND, either  express  or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codeartisans.sked.cron;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Task registered in a CronScheduler.
+ *
+ * Cancelling and rescheduling can be done from any thread, while the scheduler is running. They take effect on the
+ * scheduler dispatcher thread, shortly after.
+ */
+public final class CronJob
+{
+    private final CronSchedulerShard shard;
+    private final Runnable task;
+    private final Semaphore permits;
+    private final Runnable run;
+    private volatile CronSchedule schedule;
+    private volatile boolean cancelled;
+    /**
+     * Whether the schedule of this job will not run anymore, only written by the scheduler dispatcher thread.
+     */
+    /* package */ volatile boolean exhausted;
+    /**
+     * Trigger of this job and index in it, only used by the scheduler dispatcher thread.
+     */
+    /* package */ CronTrigger trigger;
+    /* package */ int index = -1;
+
+    /**
+     * @param shard             Owning scheduler shard
+     * @param schedule          Initial schedule
+     * @param task              Task
+     * @param maxConcurrency    Maximum count of concurrent runs, unbounded if not strictly positive
+     */
+    /* package */ CronJob( CronSchedulerShard shard, CronSchedule schedule, Runnable task, int maxConcurrency )
+    {
+        this.shard = shard;
+        this.schedule = schedule;
+        this.task = task;
+        this.permits = maxConcurrency > 0 ? new Semaphore( maxConcurrency ) : null;
+        this.run = permits == null ? task : this::runWithPermit;
+    }
+
+    public CronSchedule schedule()
+    {
+        return schedule;
+    }
+
+    public Runnable task()
+    {
+        return task;
+    }
+
+    /**
+     * @return Runnable handed to the executor on each fire
+     */
+    /* package */ Runnable runnable()
+    {
+        return run;
+    }
+
+    public boolean isCancelled()
+    {
+        return cancelled;
+    }
+
+    /**
+     * Jobs whose schedule will not run anymore, eg. after the last year of their schedule, are dropped by the
+     * scheduler. They can be rescheduled.
+     *
+     * @return true if the schedule of this job will not run anymore
+     */
+    public boolean isExhausted()
+    {
+        return exhausted;
+    }
+
+    /**
+     * Stop running this job, a run already handed to the executor is not interrupted.
+     */
+    public void cancel()
+    {
+        if( !cancelled )
+        {
+            cancelled = true;
+            shard.update( this );
+        }
+    }
+
+    /**
+     * Run this job according to another schedule, starting after the current second.
+     *
+     * @param schedule  New schedule
+     * @throws IllegalStateException if this job is cancelled
+     */
+    public void reschedule( CronSchedule schedule )
+    {
+        if( schedule == null )
+        {
+            throw new IllegalArgumentException( "Schedule must not be null" );
+        }
+        if( cancelled )
+        {
+            throw new IllegalStateException( "Cancelled jobs cannot be rescheduled" );
+        }
+        this.schedule = schedule;
+        shard.update( this );
+    }
+
+    /**
+     * Runs beyond the maximum concurrency wait for a permit on the thread they were handed to. The wait is managed so
+     * that a ForkJoinPool compensates the blocked worker, and other jobs of the fire are not starved.
+     */
+    private void runWithPermit()
+    {
+        try
+        {
+            ForkJoinPool.managedBlock( new PermitBlocker( permits ) );
+        }
+        catch( InterruptedException ex )
+        {
+            Logger.warn( "CronScheduler dropped a run of " + this + ", interrupted while waiting for a permit", ex );
+            Thread.currentThread().interrupt();
+            return;
+        }
+        try
+        {
+            task.run();
+        }
+        finally
+        {
+            permits.release();
+        }
+    }
+
+    /**
+     * Acquires a permit, it is held once either method returned true.
+     */
+    private static final class PermitBlocker
+        implements ForkJoinPool.ManagedBlocker
+    {
+        private final Semaphore permits;
+        private boolean acquired;
+
+        private PermitBlocker( Semaphore permits )
+        {
+            this.permits = permits;
+        }
+
+        @Override
+        public boolean isReleasable()
+        {
+            return acquired || ( acquired = permits.tryAcquire() );
+        }
+
+        @Override
+        public boolean block()
+            throws InterruptedException
+        {
+            if( !acquired )
+            {
+                permits.acquire();
+                acquired = true;
+            }
+            return true;
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        return "CronJob[" + schedule + "]";
+    }
+}
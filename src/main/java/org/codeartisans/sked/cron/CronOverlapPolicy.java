@@ -0,0 +1,40 @@
+/*
+ * Copyright (c) 2014, Paul Merlin. All Rights Reserved.
+ *
+ * Licensed  under the  Apache License,  Version 2.0  (the "License");
+ * you may not use  this file  except in  compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed  under the  License is distributed on an "AS IS" BASIS,
+ * WITHOUT  WARRANTIES OR CONDITIONS  OF ANY KIND, either  express  or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codeartisans.sked.cron;
+
+/**
+ * What to do when a schedule fires while a previous run of its task is still in progress.
+ */
+public enum CronOverlapPolicy
+{
+    /**
+     * Skip the run, the task runs again on the first run of the schedule after the current one completes.
+     */
+    SKIP,
+    /**
+     * Queue the run, it runs as soon as the current one completes.
+     *
+     * At most one run is queued, runs firing while one is already queued are coalesced with it. A task slower than
+     * its schedule thus runs back to back without building an unbounded backlog of late runs.
+     */
+    QUEUE,
+    /**
+     * Run concurrently with the current run, as far as the executor allows.
+     */
+    CONCURRENT
+}
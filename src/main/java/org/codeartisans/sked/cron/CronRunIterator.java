@@ -0,0 +1,147 @@
+/*
+ * Copyright (c) 2014, Paul Merlin. All Rights Reserved.
+ *
+ * Licensed  under the  Apache License,  Version 2.0  (the "License");
+ * you may not use  this file  except in  compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed  under the  License is distributed on an "AS IS" BASIS,
+ * WITHOUT  WARRANTIES OR CONDITIONS  OF ANY KIND, either  express  or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codeartisans.sked.cron;
+
+import java.time.zone.ZoneRules;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+/**
+ * Iterates over the runs of a schedule, in ascending order.
+ *
+ * The fields of the current run are carried from one run to the next. Seconds, minutes and hours are advanced in
+ * place, only moving to another day goes through the schedule search.
+ */
+/* package */ final class CronRunIterator
+    implements PrimitiveIterator.OfLong
+{
+    private final CronSchedule schedule;
+    private final CronAtom secondAtom;
+    private final CronAtom minuteAtom;
+    private final CronAtom hourAtom;
+    private final int firstSecond;
+    private final int firstMinute;
+    private final ZoneRules rules;
+    private final LocalTimeResolver resolver;
+    private final long endEpochMillis;
+    private long epochDay;
+    private int hour;
+    private int minute;
+    private int second;
+    private long next;
+
+    /**
+     * @param schedule          Iterated schedule
+     * @param startEpochMillis  Start time, inclusive
+     * @param endEpochMillis    End time, exclusive
+     * @param rules             Rules of the zone in which the schedule is evaluated
+     */
+    /* package */ CronRunIterator( CronSchedule schedule, long startEpochMillis, long endEpochMillis, ZoneRules rules )
+    {
+        this.schedule = schedule;
+        this.secondAtom = schedule.secondAtom();
+        this.minuteAtom = schedule.minuteAtom();
+        this.hourAtom = schedule.hourAtom();
+        this.firstSecond = secondAtom.nextValue( 0 );
+        this.firstMinute = minuteAtom.nextValue( 0 );
+        this.rules = rules;
+        this.resolver = new LocalTimeResolver( rules );
+        this.endEpochMillis = endEpochMillis;
+        // First run strictly after the millisecond preceding start, no run before 1970 local time
+        long start = Math.max( startEpochMillis, -CivilTime.SECONDS_PER_DAY * 1000L );
+        moveTo( schedule.nextLocalRun( CivilTime.toNextLocalEpochSecond( start - 1, rules ) ) );
+    }
+
+    @Override
+    public boolean hasNext()
+    {
+        return next != CronSchedule.NEVER && next < endEpochMillis;
+    }
+
+    @Override
+    public long nextLong()
+    {
+        if( !hasNext() )
+        {
+            throw new NoSuchElementException();
+        }
+        long run = next;
+        if( resolver.isShifted() )
+        {
+            // Run in a gap shifted forward, resume after the local time it has been shifted to as nextFire does
+            moveTo( schedule.nextLocalRun( CivilTime.toLocalEpochSecond( run, rules ) + 1 ) );
+        }
+        else
+        {
+            advance();
+        }
+        return run;
+    }
+
+    private void advance()
+    {
+        int nextSecond = secondAtom.nextValue( second + 1 );
+        if( nextSecond != -1 )
+        {
+            second = nextSecond;
+        }
+        else
+        {
+            int nextMinute = minuteAtom.nextValue( minute + 1 );
+            if( nextMinute != -1 )
+            {
+                minute = nextMinute;
+                second = firstSecond;
+            }
+            else
+            {
+                int nextHour = hourAtom.nextValue( hour + 1 );
+                if( nextHour == -1 )
+                {
+                    moveTo( schedule.nextLocalRun( ( epochDay + 1 ) * CivilTime.SECONDS_PER_DAY ) );
+                    return;
+                }
+                hour = nextHour;
+                minute = firstMinute;
+                second = firstSecond;
+            }
+        }
+        next = toEpochMillis();
+    }
+
+    private void moveTo( long localRun )
+    {
+        if( localRun == CronSchedule.NEVER )
+        {
+            next = CronSchedule.NEVER;
+            return;
+        }
+        epochDay = Math.floorDiv( localRun, CivilTime.SECONDS_PER_DAY );
+        int secondOfDay = Math.floorMod( localRun, CivilTime.SECONDS_PER_DAY );
+        hour = secondOfDay / 3600;
+        minute = secondOfDay / 60 % 60;
+        second = secondOfDay % 60;
+        next = toEpochMillis();
+    }
+
+    private long toEpochMillis()
+    {
+        long localRun = epochDay * CivilTime.SECONDS_PER_DAY + hour * 3600 + minute * 60 + second;
+        return resolver.toEpochSecond( localRun ) * 1000;
+    }
+}
@@ -0,0 +1,205 @@
+/*
+ * Copyright (c) 2014, Paul Merlin. All Rights Reserved.
+ *
+ * Licensed  under the  Apache License,  Version 2.0  (the "License");
+ * you may not use  this file  except in  compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed  under the  License is distributed on an "AS IS" BASIS,
+ * WITHOUT  WARRANTIES OR CONDITIONS  OF ANY KIND, either  express  or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codeartisans.sked.cron;
+
+import java.time.Instant;
+import java.time.zone.ZoneOffsetTransition;
+import java.time.zone.ZoneRules;
+import java.util.Comparator;
+import java.util.Spliterator;
+import java.util.function.LongConsumer;
+
+/**
+ * Spliterator over the runs of a schedule between two instants, in ascending order.
+ *
+ * Splits at calendar boundaries in the zone of the schedule: the start of a year for ranges spanning several years,
+ * the start of a month for ranges spanning several months, midnight otherwise. Ranges within a single day are not
+ * split. Split points are moved away from offset transitions: at a midnight within a day of a transition, the local
+ * walk of the runs may resume after a shifted run or repeat an overlap, so it cannot be resumed from midnight alone.
+ * Each part enumerates its own range with a {@link CronRunIterator} created on first traversal, once traversal has
+ * begun the spliterator does not split anymore.
+ */
+/* package */ final class CronRunSpliterator
+    implements Spliterator.OfLong
+{
+    private static final int CHARACTERISTICS = ORDERED | DISTINCT | SORTED | NONNULL | IMMUTABLE;
+    private static final long DAYS_PER_TWO_YEARS = 731;
+    private static final long DAYS_PER_TWO_MONTHS = 62;
+    private static final int MAX_SPLIT_MOVE = 3;
+
+    private final CronSchedule schedule;
+    private final ZoneRules rules;
+    private long startEpochMillis;
+    private final long endEpochMillis;
+    private CronRunIterator iterator;
+
+    /**
+     * @param schedule          Enumerated schedule
+     * @param startEpochMillis  Start time, inclusive
+     * @param endEpochMillis    End time, exclusive
+     * @param rules             Rules of the zone in which the schedule is evaluated
+     */
+    /* package */ CronRunSpliterator( CronSchedule schedule, long startEpochMillis, long endEpochMillis,
+                                      ZoneRules rules )
+    {
+        this.schedule = schedule;
+        this.rules = rules;
+        this.startEpochMillis = startEpochMillis;
+        this.endEpochMillis = endEpochMillis;
+    }
+
+    @Override
+    public boolean tryAdvance( LongConsumer action )
+    {
+        CronRunIterator runs = iterator();
+        if( runs.hasNext() )
+        {
+            action.accept( runs.nextLong() );
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public void forEachRemaining( LongConsumer action )
+    {
+        iterator().forEachRemaining( action );
+    }
+
+    @Override
+    public Spliterator.OfLong trySplit()
+    {
+        if( iterator != null || startEpochMillis >= endEpochMillis )
+        {
+            return null;
+        }
+        long startDay = Math.floorDiv( CivilTime.toLocalEpochSecond( startEpochMillis, rules ),
+                                       CivilTime.SECONDS_PER_DAY );
+        long endDay = Math.floorDiv( CivilTime.toLocalEpochSecond( endEpochMillis - 1, rules ),
+                                     CivilTime.SECONDS_PER_DAY );
+        if( endDay <= startDay )
+        {
+            return null;
+        }
+        long middleDay = startDay + ( endDay - startDay + 1 ) / 2;
+        long civil = CivilTime.civilFromDays( middleDay );
+        long splitDay;
+        if( endDay - startDay >= DAYS_PER_TWO_YEARS )
+        {
+            splitDay = CivilTime.daysFromCivil( CivilTime.year( civil ), 1, 1 );
+        }
+        else if( endDay - startDay >= DAYS_PER_TWO_MONTHS )
+        {
+            splitDay = CivilTime.daysFromCivil( CivilTime.year( civil ), CivilTime.month( civil ), 1 );
+        }
+        else
+        {
+            splitDay = middleDay;
+        }
+        if( splitDay <= startDay )
+        {
+            splitDay = middleDay;
+        }
+        long splitEpochMillis = splitEpochMillis( splitDay, startDay, endDay );
+        if( splitEpochMillis <= startEpochMillis || splitEpochMillis >= endEpochMillis )
+        {
+            return null;
+        }
+        Spliterator.OfLong prefix = new CronRunSpliterator( schedule, startEpochMillis, splitEpochMillis, rules );
+        startEpochMillis = splitEpochMillis;
+        return prefix;
+    }
+
+    /**
+     * @return Epoch milliseconds of the midnight of the given day, or of a nearby day away from offset transitions,
+     *         {@link CronSchedule#NEVER} if there is none between start and end days
+     */
+    private long splitEpochMillis( long splitDay, long startDay, long endDay )
+    {
+        long splitEpochMillis = candidateEpochMillis( splitDay, startDay, endDay );
+        for( int distance = 1; distance <= MAX_SPLIT_MOVE && splitEpochMillis == CronSchedule.NEVER; distance++ )
+        {
+            splitEpochMillis = candidateEpochMillis( splitDay + distance, startDay, endDay );
+            if( splitEpochMillis == CronSchedule.NEVER )
+            {
+                splitEpochMillis = candidateEpochMillis( splitDay - distance, startDay, endDay );
+            }
+        }
+        return splitEpochMillis;
+    }
+
+    /**
+     * @return Epoch milliseconds of the midnight of the given day, {@link CronSchedule#NEVER} if it is not after the
+     *         start day, after the end day or near an offset transition
+     */
+    private long candidateEpochMillis( long day, long startDay, long endDay )
+    {
+        if( day <= startDay || day > endDay )
+        {
+            return CronSchedule.NEVER;
+        }
+        long splitSecond = CivilTime.toEpochSecond( day * CivilTime.SECONDS_PER_DAY, rules );
+        return isNearTransition( splitSecond ) ? CronSchedule.NEVER : splitSecond * 1000;
+    }
+
+    private boolean isNearTransition( long epochSecond )
+    {
+        if( rules.isFixedOffset() )
+        {
+            return false;
+        }
+        ZoneOffsetTransition transition = rules.nextTransition(
+            Instant.ofEpochSecond( epochSecond - CivilTime.SECONDS_PER_DAY ) );
+        return transition != null && transition.toEpochSecond() <= epochSecond + CivilTime.SECONDS_PER_DAY;
+    }
+
+    /**
+     * @return The count of seconds in the remaining range, an upper bound of the count of remaining runs
+     */
+    @Override
+    public long estimateSize()
+    {
+        if( iterator != null )
+        {
+            return Long.MAX_VALUE;
+        }
+        return Math.max( 0, Math.floorDiv( endEpochMillis, 1000 ) - Math.floorDiv( startEpochMillis, 1000 ) + 1 );
+    }
+
+    @Override
+    public int characteristics()
+    {
+        return CHARACTERISTICS;
+    }
+
+    @Override
+    public Comparator<? super Long> getComparator()
+    {
+        // Natural order
+        return null;
+    }
+
+    private CronRunIterator iterator()
+    {
+        if( iterator == null )
+        {
+            iterator = new CronRunIterator( schedule, startEpochMillis, endEpochMillis, rules );
+        }
+        return iterator;
+    }
+}
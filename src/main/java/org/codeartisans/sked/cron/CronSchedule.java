@@ -17,8 +17,22 @@
  */
 package org.codeartisans.sked.cron;
 
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.io.ObjectStreamException;
 import java.io.Serializable;
-import java.util.Calendar;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.zone.ZoneOffsetTransition;
+import java.time.zone.ZoneRules;
+import java.util.PrimitiveIterator;
+import java.util.stream.LongStream;
+import java.util.stream.StreamSupport;
 
 /**
  * Cron expression parsing is based on the GNU crontab manpage that can be found
@@ -44,7 +58,7 @@ public final class CronSchedule
     {
         try
         {
-            CronScheduleUtil.validateAndSplitExpression( cronExpression );
+            new CronSchedule( cronExpression );
             return true;
         }
         catch( IllegalArgumentException ex )
@@ -53,286 +67,1197 @@ public final class CronSchedule
         return false;
     }
 
-    private String expression;
-    private transient CronAtom secondAtom;
-    private transient CronAtom minuteAtom;
-    private transient CronAtom hourAtom;
-    private transient CronAtom dayOfMonthAtom;
-    private transient CronAtom monthAtom;
-    private transient CronAtom dayOfWeekAtom;
-    private transient CronAtom yearAtom;
-    private transient boolean loaded = false;
+    private static final long serialVersionUID = 7157780877138755709L;
 
+    /**
+     * Serialized form of previous versions, see {@link #readResolve()}.
+     */
+    private final String expression;
+    private final transient CronAtom secondAtom;
+    private final transient CronAtom minuteAtom;
+    private final transient CronAtom hourAtom;
+    private final transient CronAtom dayOfMonthAtom;
+    private final transient CronAtom monthAtom;
+    private final transient CronAtom dayOfWeekAtom;
+    private final transient CronAtom yearAtom;
+    /**
+     * Last year this schedule can run, -1 if it never runs.
+     */
+    private final transient int lastYear;
+    /**
+     * Period in seconds of fixed period schedules, 0 otherwise, see {@link #computePeriod()}.
+     */
+    private final transient int period;
+    /**
+     * Local epoch seconds of runs of fixed period schedules modulo their period.
+     */
+    private final transient int periodOffset;
+    /**
+     * Seconds of day of schedules running many times a day, null otherwise.
+     */
+    private final transient CronDayPlan dayPlan;
+
+    /**
+     * Instances are immutable and fully built once constructed, they can be shared across threads.
+     *
+     * @param cronExpression    Cron expression
+     * @throws IllegalArgumentException if the given expression is not valid
+     */
     public CronSchedule( String cronExpression )
     {
-        load( cronExpression );
+        this( new CronScheduleParser( cronExpression ) );
+    }
+
+    /* package */ CronSchedule( CronAtomSource source )
+    {
+        secondAtom = CronAtomPool.intern( new SecondAtom( source ) );
+        minuteAtom = CronAtomPool.intern( new MinuteAtom( source ) );
+        hourAtom = CronAtomPool.intern( new HourAtom( source ) );
+        dayOfMonthAtom = CronAtomPool.intern( new DayOfMonthAtom( source ) );
+        monthAtom = CronAtomPool.intern( new MonthAtom( source ) );
+        dayOfWeekAtom = CronAtomPool.intern( new DayOfWeekAtom( source ) );
+        yearAtom = CronAtomPool.intern( new YearAtom( source ) );
+        String normalized = source.end();
+        expression = normalized != null
+                     ? normalized
+                     : secondAtom.expression() + ' ' + minuteAtom.expression() + ' ' + hourAtom.expression() + ' '
+                       + dayOfMonthAtom.expression() + ' ' + monthAtom.expression() + ' '
+                       + dayOfWeekAtom.expression() + ' ' + yearAtom.expression();
+        lastYear = computeLastYear();
+        period = computePeriod();
+        periodOffset = period == 0
+                       ? 0
+                       : hourAtom.nextValue( 0 ) * 3600 + minuteAtom.nextValue( 0 ) * 60 + secondAtom.nextValue( 0 );
+        dayPlan = period == 0 && runsPerDay() > DAY_PLAN_THRESHOLD
+                  ? CronDayPlan.of( hourAtom, minuteAtom, secondAtom )
+                  : null;
+    }
+
+    /**
+     * Schedules running more than this count of times a day, and that have no fixed period, use a day plan.
+     */
+    private static final int DAY_PLAN_THRESHOLD = 24;
+
+    /**
+     * Restore a schedule from its binary form without parsing.
+     *
+     * The expression of the restored schedule is rebuilt from its compiled atoms. It has the same runs as the original
+     * expression but may be written differently, eg. with 0-40/20 in place of 0,20,40.
+     *
+     * @param bytes Binary form, see {@link #toBytes()}
+     * @return      The restored schedule
+     * @throws IllegalArgumentException if the given bytes are not a valid binary form
+     */
+    public static CronSchedule fromBytes( byte[] bytes )
+    {
+        return new CronSchedule( new CronScheduleCodec( bytes ) );
+    }
+
+    /**
+     * Compact, versioned, binary form of this schedule, holding its compiled atoms but not its expression.
+     *
+     * @return The binary form of this schedule
+     * @see #fromBytes(byte[])
+     */
+    public byte[] toBytes()
+    {
+        return CronScheduleCodec.encode( secondAtom, minuteAtom, hourAtom, dayOfMonthAtom, monthAtom, dayOfWeekAtom,
+                                         yearAtom );
+    }
+
+    /**
+     * Schedules are serialized in their binary form, see {@link #fromBytes(byte[])} for their deserialized expression.
+     *
+     * @return The serialized form of this schedule
+     * @throws ObjectStreamException never
+     */
+    private Object writeReplace()
+        throws ObjectStreamException
+    {
+        return new SerializedForm( toBytes() );
     }
 
-    private CronSchedule loaded()
+    /**
+     * Binary form as written by {@link CronSchedule#writeReplace()}.
+     */
+    private static final class SerializedForm
+        implements Externalizable
     {
-        if( !loaded )
+        private static final long serialVersionUID = 1L;
+        private static final int MAX_LENGTH = 1 << 17;
+        private byte[] bytes;
+
+        public SerializedForm()
+        {
+        }
+
+        private SerializedForm( byte[] bytes )
+        {
+            this.bytes = bytes;
+        }
+
+        @Override
+        public void writeExternal( ObjectOutput out )
+            throws IOException
+        {
+            out.writeInt( bytes.length );
+            out.write( bytes );
+        }
+
+        @Override
+        public void readExternal( ObjectInput in )
+            throws IOException
+        {
+            int length = in.readInt();
+            if( length < 0 || length > MAX_LENGTH )
+            {
+                throw new InvalidObjectException( "Invalid binary cron schedule length " + length );
+            }
+            bytes = new byte[ length ];
+            in.readFully( bytes );
+        }
+
+        private Object readResolve()
+            throws ObjectStreamException
+        {
+            try
+            {
+                return fromBytes( bytes );
+            }
+            catch( IllegalArgumentException ex )
+            {
+                InvalidObjectException invalid = new InvalidObjectException( ex.getMessage() );
+                invalid.initCause( ex );
+                throw invalid;
+            }
+        }
+    }
+
+    /**
+     * Schedules serialized by previous versions hold their expression only, it is parsed again.
+     *
+     * @return A fully built schedule from the deserialized expression
+     * @throws ObjectStreamException if the deserialized expression is not valid
+     */
+    private Object readResolve()
+        throws ObjectStreamException
+    {
+        try
+        {
+            return new CronSchedule( expression );
+        }
+        catch( IllegalArgumentException ex )
+        {
+            InvalidObjectException invalid = new InvalidObjectException( ex.getMessage() );
+            invalid.initCause( ex );
+            throw invalid;
+        }
+    }
+
+    private int runsPerDay()
+    {
+        return Long.bitCount( hourAtom.valuesMask() ) * Long.bitCount( minuteAtom.valuesMask() )
+               * Long.bitCount( secondAtom.valuesMask() );
+    }
+
+    /**
+     * Proves whether this schedule can run at all.
+     *
+     * @return true if this schedule runs at least once between the minimum and maximum allowed years
+     */
+    public boolean isSatisfiable()
+    {
+        return lastYear != -1;
+    }
+
+    private int computeLastYear()
+    {
+        // Year independent check first, days of month beyond the length of every possible month never match
+        boolean possible = false;
+        for( int month = monthAtom.nextValue( 1 ); month != -1 && !possible; month = monthAtom.nextValue( month + 1 ) )
+        {
+            int maxDaysInMonth = month == 2 ? 29 : CivilTime.daysInMonth( 2000, month );
+            possible = ( dayOfMonthAtom.valuesMask() & ( ( 1L << ( maxDaysInMonth + 1 ) ) - 2 ) ) != 0;
+        }
+        if( !possible )
+        {
+            return -1;
+        }
+        // Then leap years and days of week, searching backward from the last possible year
+        for( int year = yearAtom.previousValue( yearAtom.maxAllowed() );
+             year != -1;
+             year = yearAtom.previousValue( year - 1 ) )
+        {
+            for( int month = monthAtom.previousValue( 12 ); month != -1; month = monthAtom.previousValue( month - 1 ) )
+            {
+                if( nextDayOfMonth( year, month, 1 ) != -1 )
+                {
+                    return year;
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Detects schedules running every day at a fixed period dividing a day, eg. every 15 seconds or every 5 minutes.
+     *
+     * Runs of such schedules are local epoch seconds equal to {@link #periodOffset} modulo {@link #period}.
+     *
+     * @return The period in seconds, 0 if none
+     */
+    private int computePeriod()
+    {
+        if( ( monthAtom.valuesMask() & ALL_MONTHS ) != ALL_MONTHS
+            || ( dayOfMonthAtom.valuesMask() & ALL_DAYS_OF_MONTH ) != ALL_DAYS_OF_MONTH
+            || ( dayOfWeekAtom.valuesMask() & ALL_DAYS_OF_WEEK ) != ALL_DAYS_OF_WEEK )
+        {
+            return 0;
+        }
+        int hourStep = progressionStep( hourAtom.valuesMask(), 24 );
+        int minuteStep = progressionStep( minuteAtom.valuesMask(), 60 );
+        int secondStep = progressionStep( secondAtom.valuesMask(), 60 );
+        if( hourStep == 1 && minuteStep == 1 && secondStep != 0 )
+        {
+            // Every N seconds
+            return secondStep;
+        }
+        if( hourStep == 1 && minuteStep != 0 && secondStep == 60 )
+        {
+            // Every N minutes
+            return minuteStep * 60;
+        }
+        if( hourStep != 0 && minuteStep == 60 && secondStep == 60 )
         {
-            load( expression );
-            loaded = true;
+            // Every N hours
+            return hourStep * 3600;
         }
-        return this;
+        return 0;
     }
 
-    private void load( String cronExpression )
+    private static final long ALL_MONTHS = 0x1FFEL;
+    private static final long ALL_DAYS_OF_MONTH = 0xFFFFFFFEL;
+    private static final long ALL_DAYS_OF_WEEK = 0xFEL;
+
+    /**
+     * @param values    Values bitmask
+     * @param count     Count of allowed values, starting at 0
+     * @return          The step of the given values if they are evenly spaced across allowed values and wrap around
+     *                  with the same step, the count of allowed values if there is a single value, 0 otherwise
+     */
+    private static int progressionStep( long values, int count )
     {
-        String[] splitted = CronScheduleUtil.validateAndSplitExpression( cronExpression );
-        secondAtom = new SecondAtom( splitted[0] );
-        minuteAtom = new MinuteAtom( splitted[1] );
-        hourAtom = new HourAtom( splitted[2] );
-        dayOfMonthAtom = new DayOfMonthAtom( splitted[3] );
-        monthAtom = new MonthAtom( splitted[4] );
-        dayOfWeekAtom = new DayOfWeekAtom( splitted[5] );
-        yearAtom = new YearAtom( splitted[6] );
-        expression = new StringBuilder().
-            append( secondAtom ).append( " " ).
-            append( minuteAtom ).append( " " ).
-            append( hourAtom ).append( " " ).
-            append( dayOfMonthAtom ).append( " " ).
-            append( monthAtom ).append( " " ).
-            append( dayOfWeekAtom ).append( " " ).
-            append( yearAtom ).toString();
+        int first = Long.numberOfTrailingZeros( values );
+        long others = values & ( values - 1 );
+        if( others == 0 )
+        {
+            return count;
+        }
+        int step = Long.numberOfTrailingZeros( others ) - first;
+        if( count % step != 0 || first >= step )
+        {
+            return 0;
+        }
+        // Progression built by doubling, then truncated to allowed values
+        long progression = 1L << first;
+        for( int span = step; span < count; span <<= 1 )
+        {
+            progression |= progression << span;
+        }
+        return ( progression & ( -1L >>> ( 64 - count ) ) ) == values ? step : 0;
     }
 
+    /**
+     * Never, returned by primitive methods when this schedule will not run anymore.
+     *
+     * As it is greater than any run, it can be compared to or sorted with run times without special casing.
+     */
+    public static final long NEVER = Long.MAX_VALUE;
+
+    /**
+     * Never before, returned by primitive methods when this schedule did not run before.
+     *
+     * As it is less than any run, it can be compared to or sorted with run times without special casing.
+     */
+    public static final long NEVER_BEFORE = Long.MIN_VALUE;
+
+    /**
+     * Boxed variant of {@link #nextFire(long)}.
+     *
+     * @param start Start time in milliseconds since the epoch
+     * @return      The first run strictly after the given time in milliseconds since the epoch, or null if this
+     *              schedule will not run anymore
+     */
     public Long firstRunAfter( Long start )
     {
-        Calendar startCal = Calendar.getInstance();
-        startCal.setTimeInMillis( start );
-        Calendar nextRun = firstRunAfter( startCal );
-        if( nextRun == null )
+        long nextRun = nextFire( start );
+        if( nextRun == NEVER )
         {
             return null;
         }
-        return nextRun.getTimeInMillis();
+        return nextRun;
     }
 
-    private Calendar firstRunAfter( Calendar start )
+    /**
+     * Compute the first run of this schedule strictly after the given time in the system default zone.
+     *
+     * @param epochMillis   Start time in milliseconds since the epoch
+     * @return              The first run strictly after the given time in milliseconds since the epoch, or
+     *                      {@link #NEVER} if this schedule will not run anymore
+     * @see #nextFire(long, java.time.ZoneId)
+     */
+    public long nextFire( long epochMillis )
     {
-        int nil = -1;
+        return nextFire( epochMillis, ZoneId.systemDefault() );
+    }
 
-        int baseYear = start.get( Calendar.YEAR );
-        int baseMonth = monthOfYear( start );
-        int baseDayOfMonth = start.get( Calendar.DAY_OF_MONTH );
-        int baseHour = start.get( Calendar.HOUR_OF_DAY );
-        int baseMinute = start.get( Calendar.MINUTE );
-        int baseSecond = start.get( Calendar.SECOND );
+    /**
+     * Compute the first run of this schedule strictly after the given time.
+     *
+     * Runs happen on whole seconds, milliseconds of the given time are ignored.
+     *
+     * @param epochMillis   Start time in milliseconds since the epoch
+     * @param zone          Zone in which this schedule is evaluated
+     * @return              The first run strictly after the given time in milliseconds since the epoch, or
+     *                      {@link #NEVER} if this schedule will not run anymore
+     */
+    public long nextFire( long epochMillis, ZoneId zone )
+    {
+        if( lastYear == -1 )
+        {
+            return NEVER;
+        }
+        ZoneRules rules = zone.getRules();
+        long nextRun = nextLocalRun( CivilTime.toNextLocalEpochSecond( epochMillis, rules ) );
+        if( nextRun == NEVER )
+        {
+            if( Logger.isTraceEnabled() )
+            {
+                Logger.trace( "CronSchedule.nextFire({}) Resolved is out of scope, returning NEVER", epochMillis );
+            }
+            return NEVER;
+        }
+        long nextFire = CivilTime.toEpochSecond( nextRun, rules ) * 1000;
+        if( Logger.isTraceEnabled() )
+        {
+            Logger.trace( "CronSchedule.nextFire({}) Got it! Returning {}", epochMillis, nextFire );
+        }
+        return nextFire;
+    }
 
-        int year = baseYear;
-        int month = baseMonth;
-        int dayOfMonth = baseDayOfMonth;
-        int hour = baseHour;
-        int minute = baseMinute;
-        int second = baseSecond;
+    /**
+     * Compute the last run of this schedule strictly before the given time in the system default zone.
+     *
+     * @param epochMillis   End time in milliseconds since the epoch
+     * @return              The last run strictly before the given time in milliseconds since the epoch, or
+     *                      {@link #NEVER_BEFORE} if this schedule did not run before
+     * @see #lastRunBefore(long, java.time.ZoneId)
+     */
+    public long lastRunBefore( long epochMillis )
+    {
+        return lastRunBefore( epochMillis, ZoneId.systemDefault() );
+    }
 
-        // Second
-        second = loaded().secondAtom.nextValue( second );
-        if( second == nil )
+    /**
+     * Compute the last run of this schedule strictly before the given time.
+     *
+     * This is the reverse of {@link #nextFire(long, java.time.ZoneId)}, chaining calls enumerates the same runs in
+     * descending order.
+     *
+     * @param epochMillis   End time in milliseconds since the epoch
+     * @param zone          Zone in which this schedule is evaluated
+     * @return              The last run strictly before the given time in milliseconds since the epoch, or
+     *                      {@link #NEVER_BEFORE} if this schedule did not run before
+     */
+    public long lastRunBefore( long epochMillis, ZoneId zone )
+    {
+        if( lastYear == -1 )
         {
-            second = loaded().secondAtom.minAllowed();
-            minute++;
+            return NEVER_BEFORE;
+        }
+        return lastRunBefore( epochMillis, zone.getRules() );
+    }
 
-            Logger.trace( "CronSchedule.firstRunAfter({}) nextSecond was -1, set to {} and minute to {}",
-                          start, second, minute );
+    /* package */ long lastRunBefore( long epochMillis, ZoneRules rules )
+    {
+        if( epochMillis <= -CivilTime.SECONDS_PER_DAY * 1000L )
+        {
+            // No run before 1970 local time
+            return NEVER_BEFORE;
         }
-        else
+        long lastSecond = Math.floorDiv( epochMillis - 1, 1000 );
+        long start = CivilTime.toLocalEpochSecond( epochMillis - 1, rules );
+        while( true )
         {
-            Logger.trace( "CronSchedule.firstRunAfter({}) nextSecond is {}", start, second );
+            long lastRun = previousLocalRun( start );
+            if( lastRun == NEVER )
+            {
+                return NEVER_BEFORE;
+            }
+            lastRun = gapFirstLocalRun( lastRun, rules );
+            long epochSecond = CivilTime.toEpochSecond( lastRun, rules );
+            if( epochSecond <= lastSecond )
+            {
+                return epochSecond * 1000;
+            }
+            // Local time in an overlap resolved after the given time, skip to the local times resolving before it
+            start = Math.min( lastRun - 1, lastSecond + lastRun - epochSecond );
+            ZoneOffsetTransition overlap = rules.getTransition( LocalDateTime.ofEpochSecond( lastRun, 0,
+                                                                                               ZoneOffset.UTC ) );
+            long overlapStart = overlap.toEpochSecond() + overlap.getOffsetAfter().getTotalSeconds();
+            if( start < overlapStart )
+            {
+                // The given time is in the first occurence of the overlap, none of its local times resolve before
+                start = Math.min( overlapStart - 1, lastSecond + overlap.getOffsetBefore().getTotalSeconds() );
+            }
         }
+    }
 
-        // Minute
-        minute = loaded().minuteAtom.nextValue( minute );
-        if( minute == nil )
+    /**
+     * Forward chaining resolves the first local run of a gap to the instant it is shifted to, then resumes after it:
+     * the other local runs of the gap, and the local runs after the gap resolving at or before that instant, are not
+     * runs.
+     *
+     * @param localRun  Local epoch second of a local run
+     * @param rules     Rules of the zone in which this schedule is evaluated
+     * @return          The local epoch second of the first local run of the gap if the given local run is not a run
+     *                  because of it, the given local run otherwise
+     */
+    private long gapFirstLocalRun( long localRun, ZoneRules rules )
+    {
+        if( rules.isFixedOffset() )
+        {
+            return localRun;
+        }
+        long epochSecond = CivilTime.toEpochSecond( localRun, rules );
+        Instant instant = Instant.ofEpochSecond( epochSecond );
+        if( rules.getOffset( instant.minusSeconds( CivilTime.SECONDS_PER_DAY ) ).getTotalSeconds()
+            >= rules.getOffset( instant ).getTotalSeconds() )
+        {
+            // No gap ended during the last day
+            return localRun;
+        }
+        ZoneOffsetTransition gap = rules.previousTransition( instant.plusSeconds( 1 ) );
+        if( gap == null || !gap.isGap() )
+        {
+            return localRun;
+        }
+        long length = gap.getDuration().getSeconds();
+        if( epochSecond >= gap.toEpochSecond() + length )
+        {
+            return localRun;
+        }
+        long gapStart = gap.toEpochSecond() + gap.getOffsetBefore().getTotalSeconds();
+        long firstLocalRun = nextLocalRun( gapStart );
+        if( firstLocalRun >= gapStart + length || localRun == firstLocalRun || localRun > firstLocalRun + length )
         {
-            second = loaded().secondAtom.minAllowed();
-            minute = loaded().minuteAtom.minAllowed();
-            hour++;
+            return localRun;
+        }
+        return firstLocalRun;
+    }
+
+    /**
+     * Test whether this schedule runs at the given time in the system default zone.
+     *
+     * @param epochMillis   Time in milliseconds since the epoch
+     * @return              true if this schedule runs during the second of the given time
+     * @see #matches(long, java.time.ZoneId)
+     */
+    public boolean matches( long epochMillis )
+    {
+        return matches( epochMillis, ZoneId.systemDefault() );
+    }
 
-            Logger.trace( "CronSchedule.firstRunAfter({}) nextMinute was -1, set to {}, second to {} and hour to {}",
-                          start, minute, second, hour );
+    /**
+     * Test whether this schedule runs at the given time.
+     *
+     * The given time is decomposed once and each field is tested against its atom, no search is involved. Runs
+     * happen on whole seconds, milliseconds of the given time are ignored. This is consistent with
+     * {@link #nextFire(long, java.time.ZoneId)} across DST transitions: the first local run skipped by a gap matches
+     * the instant it is shifted to, other local runs of the gap and local runs after the gap up to that instant do
+     * not match, and local times repeated by an overlap only match their second occurence.
+     *
+     * @param epochMillis   Time in milliseconds since the epoch
+     * @param zone          Zone in which this schedule is evaluated
+     * @return              true if this schedule runs during the second of the given time
+     */
+    public boolean matches( long epochMillis, ZoneId zone )
+    {
+        if( lastYear == -1 )
+        {
+            return false;
+        }
+        long epochSecond = Math.floorDiv( epochMillis, 1000 );
+        ZoneRules rules = zone.getRules();
+        if( rules.isFixedOffset() )
+        {
+            return matchesLocal( epochSecond + rules.getOffset( Instant.EPOCH ).getTotalSeconds() );
         }
-        else if( minute > baseMinute )
+        Instant instant = Instant.ofEpochSecond( epochSecond );
+        int offset = rules.getOffset( instant ).getTotalSeconds();
+        long localEpochSecond = epochSecond + offset;
+        if( matchesLocal( localEpochSecond )
+            && ( rules.getOffset( instant.plusSeconds( CivilTime.SECONDS_PER_DAY ) ).getTotalSeconds() >= offset
+                 || !CivilTime.isInOverlapFirstOccurence( instant, rules ) )
+            && gapFirstLocalRun( localEpochSecond, rules ) == localEpochSecond )
         {
-            second = loaded().secondAtom.minAllowed();
+            return true;
+        }
+        if( rules.getOffset( instant.minusSeconds( CivilTime.SECONDS_PER_DAY ) ).getTotalSeconds() < offset )
+        {
+            // Only the first local run of a gap is shifted forward to the instant right after it
+            ZoneOffsetTransition gap = rules.previousTransition( instant.plusSeconds( 1 ) );
+            if( gap != null && gap.isGap()
+                && epochSecond < gap.toEpochSecond() + gap.getDuration().getSeconds() )
+            {
+                long gapLocalEpochSecond = epochSecond + gap.getOffsetBefore().getTotalSeconds();
+                return matchesLocal( gapLocalEpochSecond )
+                       && gapFirstLocalRun( gapLocalEpochSecond, rules ) == gapLocalEpochSecond;
+            }
+        }
+        return false;
+    }
 
-            Logger.trace( "CronSchedule.firstRunAfter({}) nextMinute was before baseMinute, set second to {}",
-                          start, second );
+    /**
+     * @return true if the year, month, dayOfMonth and dayOfWeek atoms match the given day
+     */
+    private boolean matchesDay( int year, int month, int dayOfMonth, long epochDay )
+    {
+        return dayOfMonthAtom.matches( dayOfMonth )
+               && dayOfWeekAtom.matches( CivilTime.dayOfWeek( epochDay ) )
+               && monthAtom.matches( month )
+               && yearAtom.matches( year )
+               && year <= lastYear;
+    }
+
+    /**
+     * @param localEpochSecond  Local epoch second
+     * @return                  true if all atoms match the fields of the given local time
+     */
+    private boolean matchesLocal( long localEpochSecond )
+    {
+        long epochDay = Math.floorDiv( localEpochSecond, CivilTime.SECONDS_PER_DAY );
+        int secondOfDay = Math.floorMod( localEpochSecond, CivilTime.SECONDS_PER_DAY );
+        long civil = CivilTime.civilFromDays( epochDay );
+        return secondAtom.matches( secondOfDay % 60 )
+               && minuteAtom.matches( secondOfDay / 60 % 60 )
+               && hourAtom.matches( secondOfDay / 3600 )
+               && matchesDay( CivilTime.year( civil ), CivilTime.month( civil ), CivilTime.dayOfMonth( civil ),
+                              epochDay );
+    }
+
+    /**
+     * Count runs of this schedule in the system default zone.
+     *
+     * @param from  Start time in milliseconds since the epoch, inclusive
+     * @param to    End time in milliseconds since the epoch, exclusive
+     * @return      The count of runs between the given times
+     * @see #countRunsBetween(long, long, java.time.ZoneId)
+     */
+    public long countRunsBetween( long from, long to )
+    {
+        return countRunsBetween( from, to, ZoneId.systemDefault() );
+    }
+
+    /**
+     * Count runs of this schedule.
+     *
+     * Runs are not enumerated. The local time line is split at zone transitions into stretches of constant offset,
+     * runs of each stretch are counted from the cardinalities of the atoms, only partial days and months at the bounds
+     * of a stretch are looked at in detail. The result is the same as {@code runsBetween( from, to, zone ).count()}.
+     *
+     * @param from  Start time in milliseconds since the epoch, inclusive
+     * @param to    End time in milliseconds since the epoch, exclusive
+     * @param zone  Zone in which this schedule is evaluated
+     * @return      The count of runs between the given times
+     */
+    public long countRunsBetween( long from, long to, ZoneId zone )
+    {
+        if( lastYear == -1 || to <= from )
+        {
+            return 0;
         }
-        else
+        ZoneRules rules = zone.getRules();
+        // No run before 1970 local time
+        long start = CivilTime.toNextLocalEpochSecond( Math.max( from, -CivilTime.SECONDS_PER_DAY * 1000L ) - 1,
+                                                       rules );
+        long endSecond = Math.floorDiv( to - 1, 1000 );
+        long lastLocal = CivilTime.daysFromCivil( lastYear + 1, 1, 1 ) * CivilTime.SECONDS_PER_DAY - 1;
+        long count = 0;
+        while( start <= lastLocal )
         {
-            Logger.trace( "CronSchedule.firstRunAfter({}) nextMinute is {}", start, minute );
+            LocalDateTime local = LocalDateTime.ofEpochSecond( start, 0, ZoneOffset.UTC );
+            ZoneOffsetTransition transition = rules.getTransition( local );
+            if( transition != null && transition.isGap() )
+            {
+                // Local times in a gap are shifted forward, after the first of them nextFire resumes after the local
+                // time it has been shifted to
+                int before = transition.getOffsetBefore().getTotalSeconds();
+                int after = transition.getOffsetAfter().getTotalSeconds();
+                long gapEnd = transition.toEpochSecond() + after;
+                long gapRun = nextLocalRun( start );
+                if( gapRun >= gapEnd )
+                {
+                    start = gapEnd;
+                    continue;
+                }
+                if( gapRun - before > endSecond )
+                {
+                    return count;
+                }
+                count++;
+                start = gapRun - before + after + 1;
+                continue;
+            }
+            int offset = transition == null
+                         ? rules.getOffset( local ).getTotalSeconds()
+                         : transition.getOffsetAfter().getTotalSeconds();
+            long end = endSecond + offset;
+            ZoneOffsetTransition next = rules.nextTransition( Instant.ofEpochSecond( start - offset ) );
+            if( next != null )
+            {
+                long stretchEnd = next.toEpochSecond() + Math.min( next.getOffsetBefore().getTotalSeconds(),
+                                                                   next.getOffsetAfter().getTotalSeconds() );
+                if( end >= stretchEnd )
+                {
+                    count += countLocalRuns( start, Math.min( stretchEnd - 1, lastLocal ) );
+                    start = stretchEnd;
+                    continue;
+                }
+            }
+            return count + countLocalRuns( start, Math.min( end, lastLocal ) );
         }
+        return count;
+    }
+
+    /**
+     * Runs of this schedule in the system default zone.
+     *
+     * @param from  Start time in milliseconds since the epoch, inclusive
+     * @param to    End time in milliseconds since the epoch, exclusive
+     * @return      Runs between the given times in milliseconds since the epoch, in ascending order
+     * @see #runsBetween(long, long, java.time.ZoneId)
+     */
+    public LongStream runsBetween( long from, long to )
+    {
+        return runsBetween( from, to, ZoneId.systemDefault() );
+    }
+
+    /**
+     * Runs of this schedule in the system default zone, in descending order.
+     *
+     * @param from  Start time in milliseconds since the epoch, inclusive
+     * @param to    End time in milliseconds since the epoch, exclusive
+     * @return      Runs between the given times in milliseconds since the epoch, in descending order
+     * @see #descendingRunsBetween(long, long, java.time.ZoneId)
+     */
+    public PrimitiveIterator.OfLong descendingRunsBetween( long from, long to )
+    {
+        return descendingRunsBetween( from, to, ZoneId.systemDefault() );
+    }
+
+    /**
+     * Runs of this schedule, in descending order.
+     *
+     * @param from  Start time in milliseconds since the epoch, inclusive
+     * @param to    End time in milliseconds since the epoch, exclusive
+     * @param zone  Zone in which this schedule is evaluated
+     * @return      Runs between the given times in milliseconds since the epoch, in descending order
+     * @see #lastRunBefore(long, java.time.ZoneId)
+     */
+    public PrimitiveIterator.OfLong descendingRunsBetween( long from, long to, ZoneId zone )
+    {
+        return new CronDescendingRunIterator( this, from, to, zone.getRules() );
+    }
+
+    /**
+     * Runs of this schedule.
+     *
+     * Runs are computed lazily and incrementally from one another, which is much cheaper than repeatedly calling
+     * {@link #nextFire(long, java.time.ZoneId)}. The stream can be made parallel, it is then split at calendar
+     * boundaries and stays ordered.
+     *
+     * @param from  Start time in milliseconds since the epoch, inclusive
+     * @param to    End time in milliseconds since the epoch, exclusive
+     * @param zone  Zone in which this schedule is evaluated
+     * @return      Runs between the given times in milliseconds since the epoch, in ascending order
+     */
+    public LongStream runsBetween( long from, long to, ZoneId zone )
+    {
+        CronRunSpliterator runs = new CronRunSpliterator( this, from, to, zone.getRules() );
+        return StreamSupport.longStream( runs, false );
+    }
+
+    /* package */ CronAtom secondAtom()
+    {
+        return secondAtom;
+    }
+
+    /* package */ CronAtom minuteAtom()
+    {
+        return minuteAtom;
+    }
+
+    /* package */ CronAtom hourAtom()
+    {
+        return hourAtom;
+    }
+
+    /**
+     * @param other Other schedule
+     * @return      true if the other schedule has the same compiled atoms, and so the same runs
+     */
+    /* package */ boolean hasSameRuns( CronSchedule other )
+    {
+        // Atoms are interned, equal atoms are most often the same instance
+        return secondAtom.equals( other.secondAtom )
+               && minuteAtom.equals( other.minuteAtom )
+               && hourAtom.equals( other.hourAtom )
+               && dayOfMonthAtom.equals( other.dayOfMonthAtom )
+               && monthAtom.equals( other.monthAtom )
+               && dayOfWeekAtom.equals( other.dayOfWeekAtom )
+               && yearAtom.equals( other.yearAtom );
+    }
+
+    /**
+     * @return Hash code consistent with {@link #hasSameRuns(CronSchedule)}
+     */
+    /* package */ int runsHashCode()
+    {
+        int hash = secondAtom.hashCode();
+        hash = 31 * hash + minuteAtom.hashCode();
+        hash = 31 * hash + hourAtom.hashCode();
+        hash = 31 * hash + dayOfMonthAtom.hashCode();
+        hash = 31 * hash + monthAtom.hashCode();
+        hash = 31 * hash + dayOfWeekAtom.hashCode();
+        return 31 * hash + yearAtom.hashCode();
+    }
 
-        // Hour
-        hour = loaded().hourAtom.nextValue( hour );
-        if( hour == nil )
+    /**
+     * @param start Local epoch second from where to search, inclusive
+     * @return      The local epoch second of the first run at or after start, or {@link #NEVER}
+     */
+    /* package */ long nextLocalRun( long start )
+    {
+        if( period != 0 && start >= 0 )
         {
-            second = loaded().secondAtom.minAllowed();
-            minute = loaded().minuteAtom.minAllowed();
-            hour = loaded().hourAtom.minAllowed();
-            dayOfMonth++;
+            // Fixed period, the search is only needed when the year is not a possible one
+            long run = start + Math.floorMod( periodOffset - start, period );
+            int year = CivilTime.year( CivilTime.civilFromDays( run / CivilTime.SECONDS_PER_DAY ) );
+            if( yearAtom.matches( year ) )
+            {
+                return run;
+            }
         }
-        else if( hour > baseHour )
+        long startDay = Math.floorDiv( start, CivilTime.SECONDS_PER_DAY );
+        int secondOfDay = Math.floorMod( start, CivilTime.SECONDS_PER_DAY );
+        long civil = CivilTime.civilFromDays( startDay );
+
+        int year = CivilTime.year( civil );
+        int month = CivilTime.month( civil );
+        int dayOfMonth = CivilTime.dayOfMonth( civil );
+
+        if( dayPlan != null )
         {
-            second = loaded().secondAtom.minAllowed();
-            minute = loaded().minuteAtom.minAllowed();
+            // Same day lookup
+            int nextSecondOfDay = dayPlan.nextSecondOfDay( secondOfDay );
+            if( nextSecondOfDay != -1 && matchesDay( year, month, dayOfMonth, startDay ) )
+            {
+                return startDay * CivilTime.SECONDS_PER_DAY + nextSecondOfDay;
+            }
         }
 
-        // DayOfMonth
-        dayOfMonth = loaded().dayOfMonthAtom.nextValue( dayOfMonth );
-        boolean retry = true;
-        while( retry )
+        int hour = secondOfDay / 3600;
+        int minute = secondOfDay / 60 % 60;
+        int second = secondOfDay % 60;
+
+        // Each field is searched from the current candidate, when a field has no more possible value the candidate
+        // is moved to the first instant of the next value of its parent field and the search restarts from the year.
+        while( true )
         {
-            if( dayOfMonth == nil )
+            // Year
+            int nextYear = yearAtom.nextValue( year );
+            if( nextYear == -1 || nextYear > lastYear )
             {
-                second = loaded().secondAtom.minAllowed();
-                minute = loaded().minuteAtom.minAllowed();
-                hour = loaded().hourAtom.minAllowed();
-                dayOfMonth = loaded().dayOfMonthAtom.minAllowed();
-                month++;
+                return NEVER;
             }
-            else if( dayOfMonth > baseDayOfMonth )
+            if( nextYear != year )
             {
-                second = loaded().secondAtom.minAllowed();
-                minute = loaded().minuteAtom.minAllowed();
-                hour = loaded().hourAtom.minAllowed();
+                year = nextYear;
+                month = 1;
+                dayOfMonth = 1;
+                hour = minute = second = 0;
             }
 
             // Month
-            month = loaded().monthAtom.nextValue( month );
-            if( month == nil )
-            {
-                second = loaded().secondAtom.minAllowed();
-                minute = loaded().minuteAtom.minAllowed();
-                hour = loaded().hourAtom.minAllowed();
-                dayOfMonth = loaded().dayOfMonthAtom.minAllowed();
-                month = loaded().monthAtom.minAllowed();
+            int nextMonth = monthAtom.nextValue( month );
+            if( nextMonth == -1 )
+            {
                 year++;
+                month = 1;
+                dayOfMonth = 1;
+                hour = minute = second = 0;
+                continue;
+            }
+            if( nextMonth != month )
+            {
+                month = nextMonth;
+                dayOfMonth = 1;
+                hour = minute = second = 0;
+            }
+
+            // DayOfMonth and DayOfWeek
+            int nextDayOfMonth = nextDayOfMonth( year, month, dayOfMonth );
+            if( nextDayOfMonth == -1 )
+            {
+                month++;
+                dayOfMonth = 1;
+                hour = minute = second = 0;
+                continue;
+            }
+            if( nextDayOfMonth != dayOfMonth )
+            {
+                dayOfMonth = nextDayOfMonth;
+                hour = minute = second = 0;
             }
-            else if( month > baseMonth )
+
+            if( dayPlan != null )
             {
-                second = loaded().secondAtom.minAllowed();
-                minute = loaded().minuteAtom.minAllowed();
-                hour = loaded().hourAtom.minAllowed();
-                dayOfMonth = loaded().dayOfMonthAtom.minAllowed();
+                // Hour, minute and second at once
+                int nextSecondOfDay = dayPlan.nextSecondOfDay( hour * 3600 + minute * 60 + second );
+                if( nextSecondOfDay == -1 )
+                {
+                    dayOfMonth++;
+                    hour = minute = second = 0;
+                    continue;
+                }
+                return CivilTime.daysFromCivil( year, month, dayOfMonth ) * CivilTime.SECONDS_PER_DAY
+                       + nextSecondOfDay;
             }
 
-            boolean dateChanged = dayOfMonth != baseDayOfMonth
-                                  || month != baseMonth
-                                  || year != baseYear;
+            // Hour
+            int nextHour = hourAtom.nextValue( hour );
+            if( nextHour == -1 )
+            {
+                dayOfMonth++;
+                hour = minute = second = 0;
+                continue;
+            }
+            if( nextHour != hour )
+            {
+                hour = nextHour;
+                minute = second = 0;
+            }
 
-            if( dayOfMonth > 28
-                && dateChanged
-                && dayOfMonth > daysInMonth( year, month ) )
+            // Minute
+            int nextMinute = minuteAtom.nextValue( minute );
+            if( nextMinute == -1 )
             {
-                dayOfMonth = nil;
+                hour++;
+                minute = second = 0;
+                continue;
             }
-            else
+            if( nextMinute != minute )
             {
-                retry = false;
+                minute = nextMinute;
+                second = 0;
             }
 
-            if( retry )
+            // Second
+            int nextSecond = secondAtom.nextValue( second );
+            if( nextSecond == -1 )
             {
-                Logger.trace( "CronSchedule.firstRunAfter({}) DayOfMonth retry", start );
+                minute++;
+                second = 0;
+                continue;
             }
+
+            return CivilTime.daysFromCivil( year, month, dayOfMonth ) * CivilTime.SECONDS_PER_DAY
+                   + hour * 3600 + minute * 60 + nextSecond;
         }
+    }
 
-        if( year > loaded().yearAtom.maxAllowed() )
+    /**
+     * Mirror of {@link #nextLocalRun(long)}.
+     *
+     * @param start Local epoch second from where to search backward, inclusive
+     * @return      The local epoch second of the last run at or before start, or {@link #NEVER}
+     */
+    private long previousLocalRun( long start )
+    {
+        long startDay = Math.floorDiv( start, CivilTime.SECONDS_PER_DAY );
+        int secondOfDay = Math.floorMod( start, CivilTime.SECONDS_PER_DAY );
+        long civil = CivilTime.civilFromDays( startDay );
+
+        int year = CivilTime.year( civil );
+        int month = CivilTime.month( civil );
+        int dayOfMonth = CivilTime.dayOfMonth( civil );
+        int hour = secondOfDay / 3600;
+        int minute = secondOfDay / 60 % 60;
+        int second = secondOfDay % 60;
+
+        // Each field is searched backward from the current candidate, when a field has no more possible value the
+        // candidate is moved to the last instant of the previous value of its parent field and the search restarts
+        // from the year. Days past the end of the month are discarded by the day of month search.
+        while( true )
         {
-            // FIXME Better log message
-            Logger.trace( "CronSchedule.firstRunAfter({}) Resolved is out of scope, returning null", start );
-            return null;
+            // Year
+            int previousYear = yearAtom.previousValue( Math.min( year, lastYear ) );
+            if( previousYear == -1 )
+            {
+                return NEVER;
+            }
+            if( previousYear != year )
+            {
+                year = previousYear;
+                month = 12;
+                dayOfMonth = 31;
+                hour = 23;
+                minute = second = 59;
+            }
+
+            // Month
+            int previousMonth = monthAtom.previousValue( month );
+            if( previousMonth == -1 )
+            {
+                year--;
+                month = 12;
+                dayOfMonth = 31;
+                hour = 23;
+                minute = second = 59;
+                continue;
+            }
+            if( previousMonth != month )
+            {
+                month = previousMonth;
+                dayOfMonth = 31;
+                hour = 23;
+                minute = second = 59;
+            }
+
+            // DayOfMonth and DayOfWeek
+            int previousDayOfMonth = previousDayOfMonth( year, month, dayOfMonth );
+            if( previousDayOfMonth == -1 )
+            {
+                month--;
+                dayOfMonth = 31;
+                hour = 23;
+                minute = second = 59;
+                continue;
+            }
+            if( previousDayOfMonth != dayOfMonth )
+            {
+                dayOfMonth = previousDayOfMonth;
+                hour = 23;
+                minute = second = 59;
+            }
+
+            // Hour
+            int previousHour = hourAtom.previousValue( hour );
+            if( previousHour == -1 )
+            {
+                dayOfMonth--;
+                hour = 23;
+                minute = second = 59;
+                continue;
+            }
+            if( previousHour != hour )
+            {
+                hour = previousHour;
+                minute = second = 59;
+            }
+
+            // Minute
+            int previousMinute = minuteAtom.previousValue( minute );
+            if( previousMinute == -1 )
+            {
+                hour--;
+                minute = second = 59;
+                continue;
+            }
+            if( previousMinute != minute )
+            {
+                minute = previousMinute;
+                second = 59;
+            }
+
+            // Second
+            int previousSecond = secondAtom.previousValue( second );
+            if( previousSecond == -1 )
+            {
+                minute--;
+                second = 59;
+                continue;
+            }
+
+            return CivilTime.daysFromCivil( year, month, dayOfMonth ) * CivilTime.SECONDS_PER_DAY
+                   + hour * 3600 + minute * 60 + previousSecond;
+        }
+    }
+
+    /**
+     * @param first Local epoch second, inclusive
+     * @param last  Local epoch second, inclusive
+     * @return      The count of local runs between the given local times
+     */
+    private long countLocalRuns( long first, long last )
+    {
+        if( last < first )
+        {
+            return 0;
+        }
+        long firstDay = Math.floorDiv( first, CivilTime.SECONDS_PER_DAY );
+        long lastDay = Math.floorDiv( last, CivilTime.SECONDS_PER_DAY );
+        int firstSecondOfDay = Math.floorMod( first, CivilTime.SECONDS_PER_DAY );
+        int lastSecondOfDay = Math.floorMod( last, CivilTime.SECONDS_PER_DAY );
+        if( firstDay == lastDay )
+        {
+            return countDays( firstDay, firstDay )
+                   * ( countRunsOfDayBefore( lastSecondOfDay + 1 ) - countRunsOfDayBefore( firstSecondOfDay ) );
+        }
+        long runsPerDay = countRunsOfDayBefore( CivilTime.SECONDS_PER_DAY );
+        return countDays( firstDay, firstDay ) * ( runsPerDay - countRunsOfDayBefore( firstSecondOfDay ) )
+               + countDays( firstDay + 1, lastDay - 1 ) * runsPerDay
+               + countDays( lastDay, lastDay ) * countRunsOfDayBefore( lastSecondOfDay + 1 );
+    }
+
+    /**
+     * @param secondOfDay   Second of day, exclusive, up to 86400
+     * @return              The count of runs of a run day before the given second of day
+     */
+    private long countRunsOfDayBefore( int secondOfDay )
+    {
+        int hour = secondOfDay / 3600;
+        int minute = secondOfDay / 60 % 60;
+        int second = secondOfDay % 60;
+        long hours = hourAtom.valuesMask();
+        long minutes = minuteAtom.valuesMask();
+        long seconds = secondAtom.valuesMask();
+        long count = Long.bitCount( hours & ( ( 1L << hour ) - 1 ) )
+                     * Long.bitCount( minutes ) * Long.bitCount( seconds );
+        if( ( hours & ( 1L << hour ) ) != 0 )
+        {
+            count += Long.bitCount( minutes & ( ( 1L << minute ) - 1 ) ) * Long.bitCount( seconds );
+            if( ( minutes & ( 1L << minute ) ) != 0 )
+            {
+                count += Long.bitCount( seconds & ( ( 1L << second ) - 1 ) );
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @param firstDay  Epoch day, inclusive
+     * @param lastDay   Epoch day, inclusive
+     * @return          The count of days between the given days accepted by the year, month, dayOfMonth and dayOfWeek
+     *                  atoms
+     */
+    private long countDays( long firstDay, long lastDay )
+    {
+        if( lastDay < firstDay )
+        {
+            return 0;
+        }
+        long firstCivil = CivilTime.civilFromDays( firstDay );
+        long lastCivil = CivilTime.civilFromDays( lastDay );
+        int year = CivilTime.year( firstCivil );
+        int month = CivilTime.month( firstCivil );
+        int lastYearOfRange = CivilTime.year( lastCivil );
+        int lastMonth = CivilTime.month( lastCivil );
+        long count = 0;
+        while( year < lastYearOfRange || ( year == lastYearOfRange && month <= lastMonth ) )
+        {
+            if( !yearAtom.matches( year ) )
+            {
+                year++;
+                month = 1;
+                continue;
+            }
+            if( monthAtom.matches( month ) )
+            {
+                long days = daysMask( year, month );
+                if( year == CivilTime.year( firstCivil ) && month == CivilTime.month( firstCivil ) )
+                {
+                    days &= -1L << CivilTime.dayOfMonth( firstCivil );
+                }
+                if( year == lastYearOfRange && month == lastMonth )
+                {
+                    days &= -1L >>> ( 63 - CivilTime.dayOfMonth( lastCivil ) );
+                }
+                count += Long.bitCount( days );
+            }
+            if( ++month > 12 )
+            {
+                year++;
+                month = 1;
+            }
         }
+        return count;
+    }
 
-        Calendar nextTime = dateTime( year, month, dayOfMonth, hour, minute, second, 0 );
+    /**
+     * @return The first day of the given month, starting at the given day inclusive, accepted by both dayOfMonth and
+     *         dayOfWeek atoms, -1 if none
+     */
+    private int nextDayOfMonth( int year, int month, int start )
+    {
+        long days = daysMask( year, month ) & ( -1L << start );
+        if( days == 0 )
+        {
+            return -1;
+        }
+        return Long.numberOfTrailingZeros( days );
+    }
 
-        if( loaded().dayOfWeekAtom.nextValue( dayOfWeek( nextTime ) ) == dayOfWeek( nextTime ) )
+    /**
+     * @return The last day of the given month, starting at the given day inclusive and going backward, accepted by both
+     *         dayOfMonth and dayOfWeek atoms, -1 if none
+     */
+    private int previousDayOfMonth( int year, int month, int start )
+    {
+        if( start <= 0 )
         {
-            Logger.trace( "CronSchedule.firstRunAfter({}) Got it! Returning {}", start, nextTime );
-            return nextTime;
+            return -1;
         }
-        Logger.trace( "CronSchedule.firstRunAfter({}) Recursion: {} is not acceptable", start, nextTime );
-        return firstRunAfter( dateTime( year, month, dayOfMonth, 23, 59, 0, 0 ) );
+        long days = daysMask( year, month ) & ( -1L >>> ( 63 - start ) );
+        if( days == 0 )
+        {
+            return -1;
+        }
+        return 63 - Long.numberOfLeadingZeros( days );
+    }
+
+    /**
+     * Intersects dayOfMonth and dayOfWeek possible values for the given month as bitmasks.
+     *
+     * @return Days of the given month accepted by both dayOfMonth and dayOfWeek atoms, bit N for day N
+     */
+    private long daysMask( int year, int month )
+    {
+        int firstDayOfWeek = CivilTime.dayOfWeek( CivilTime.daysFromCivil( year, month, 1 ) );
+        return dayOfMonthAtom.valuesMask()
+               & daysOfWeekMask( dayOfWeekAtom.valuesMask(), firstDayOfWeek )
+               & ( ( 1L << ( CivilTime.daysInMonth( year, month ) + 1 ) ) - 2 );
+    }
+
+    /**
+     * @param daysOfWeek        Days of week bitmask, bit 1 for monday to bit 7 for sunday
+     * @param firstDayOfWeek    Day of week of the first day of the month
+     * @return                  Days of month bitmask, bit 1 for the first day of the month to bit 35
+     */
+    private static long daysOfWeekMask( long daysOfWeek, int firstDayOfWeek )
+    {
+        // Week pattern starting on the first day of the month, bit 0 for the first day
+        long week = ( daysOfWeek >>> 1 ) & 0x7F;
+        int shift = firstDayOfWeek - 1;
+        week = ( ( week >>> shift ) | ( week << ( 7 - shift ) ) ) & 0x7F;
+        return ( week | week << 7 | week << 14 | week << 21 | week << 28 ) << 1;
     }
 
     @Override
     public String toString()
     {
-        return loaded().expression;
-    }
-
-    private static Calendar dateTime( int year, int month, int dayOfMonth,
-                                      int hours, int minutes, int seconds, int millis )
-    {
-        Calendar cal = Calendar.getInstance();
-        cal.set( year, month - 1, dayOfMonth, hours, minutes, seconds );
-        cal.set( Calendar.MILLISECOND, millis );
-        return cal;
-    }
-
-    private static int daysInMonth( int year, int month )
-    {
-        return dateTime( year, month, 15, 12, 0, 0, 0 ).getActualMaximum( Calendar.DAY_OF_MONTH );
-    }
-
-    private static int dayOfWeek( Calendar calendar )
-    {
-        switch( calendar.get( Calendar.DAY_OF_WEEK ) )
-        {
-            case Calendar.MONDAY:
-                return 1;
-            case Calendar.TUESDAY:
-                return 2;
-            case Calendar.WEDNESDAY:
-                return 3;
-            case Calendar.THURSDAY:
-                return 4;
-            case Calendar.FRIDAY:
-                return 5;
-            case Calendar.SATURDAY:
-                return 6;
-            case Calendar.SUNDAY:
-                return 7;
-            default:
-                throw new InternalError( "Something is broken in sked library, please report the issue." );
-        }
-    }
-
-    private static int monthOfYear( Calendar calendar )
-    {
-        switch( calendar.get( Calendar.MONTH ) )
-        {
-            case Calendar.JANUARY:
-                return 1;
-            case Calendar.FEBRUARY:
-                return 2;
-            case Calendar.MARCH:
-                return 3;
-            case Calendar.APRIL:
-                return 4;
-            case Calendar.MAY:
-                return 5;
-            case Calendar.JUNE:
-                return 6;
-            case Calendar.JULY:
-                return 7;
-            case Calendar.AUGUST:
-                return 8;
-            case Calendar.SEPTEMBER:
-                return 9;
-            case Calendar.OCTOBER:
-                return 10;
-            case Calendar.NOVEMBER:
-                return 11;
-            case Calendar.DECEMBER:
-                return 12;
-            default:
-                throw new InternalError( "Something is broken in sked library, please report the issue." );
-        }
+        return expression;
     }
 
 }
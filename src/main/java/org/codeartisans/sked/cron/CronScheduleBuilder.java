@@ -0,0 +1,281 @@
+/*
+ * Copyright (c) 2014, Paul Merlin. All Rights Reserved.
+ *
+ * Licensed  under the  Apache License,  Version 2.0  (the "License");
+ * you may not use  this file  except in  compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed  under the  License is distributed on an "AS IS" BASIS,
+ * WITHOUT  WARRANTIES OR CONDITIONS  OF ANY KIND, either  express  or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codeartisans.sked.cron;
+
+import java.util.Arrays;
+
+/**
+ * Builds CronSchedule instances field by field, without going through a cron expression.
+ *
+ * Fields are in the same order and have the same allowed values as in cron expressions. Values and ranges added to a
+ * field accumulate, fields left untouched allow all values, as *. Values are validated when building, but adding no
+ * values at all to a field is rejected right away so that it is not mistaken for an untouched field.
+ *
+ * <pre>
+ * CronSchedule schedule = new CronScheduleBuilder()
+ *     .seconds( 0 )
+ *     .minutesBetween( 0, 59, 15 )
+ *     .hoursBetween( 9, 17 )
+ *     .daysOfWeekBetween( 1, 5 )
+ *     .build();
+ * </pre>
+ */
+public final class CronScheduleBuilder
+{
+    private static final int SECONDS = 0;
+    private static final int MINUTES = 1;
+    private static final int HOURS = 2;
+    private static final int DAYS_OF_MONTH = 3;
+    private static final int MONTHS = 4;
+    private static final int DAYS_OF_WEEK = 5;
+    private static final int YEARS = 6;
+    private static final int FIELDS_COUNT = 7;
+
+    /**
+     * Per field, first, last and step of each added range.
+     */
+    private final int[][] ranges = new int[ FIELDS_COUNT ][];
+    private final int[] rangesCounts = new int[ FIELDS_COUNT ];
+
+    public CronScheduleBuilder seconds( int... values )
+    {
+        return add( SECONDS, values );
+    }
+
+    public CronScheduleBuilder secondsBetween( int first, int last )
+    {
+        return add( SECONDS, first, last, 1 );
+    }
+
+    public CronScheduleBuilder secondsBetween( int first, int last, int step )
+    {
+        return add( SECONDS, first, last, step );
+    }
+
+    public CronScheduleBuilder minutes( int... values )
+    {
+        return add( MINUTES, values );
+    }
+
+    public CronScheduleBuilder minutesBetween( int first, int last )
+    {
+        return add( MINUTES, first, last, 1 );
+    }
+
+    public CronScheduleBuilder minutesBetween( int first, int last, int step )
+    {
+        return add( MINUTES, first, last, step );
+    }
+
+    public CronScheduleBuilder hours( int... values )
+    {
+        return add( HOURS, values );
+    }
+
+    public CronScheduleBuilder hoursBetween( int first, int last )
+    {
+        return add( HOURS, first, last, 1 );
+    }
+
+    public CronScheduleBuilder hoursBetween( int first, int last, int step )
+    {
+        return add( HOURS, first, last, step );
+    }
+
+    public CronScheduleBuilder daysOfMonth( int... values )
+    {
+        return add( DAYS_OF_MONTH, values );
+    }
+
+    public CronScheduleBuilder daysOfMonthBetween( int first, int last )
+    {
+        return add( DAYS_OF_MONTH, first, last, 1 );
+    }
+
+    public CronScheduleBuilder daysOfMonthBetween( int first, int last, int step )
+    {
+        return add( DAYS_OF_MONTH, first, last, step );
+    }
+
+    public CronScheduleBuilder months( int... values )
+    {
+        return add( MONTHS, values );
+    }
+
+    public CronScheduleBuilder monthsBetween( int first, int last )
+    {
+        return add( MONTHS, first, last, 1 );
+    }
+
+    public CronScheduleBuilder monthsBetween( int first, int last, int step )
+    {
+        return add( MONTHS, first, last, step );
+    }
+
+    /**
+     * @param values    Days of week, from 1 for monday to 7 for sunday, 0 is sunday too
+     * @return          This builder
+     */
+    public CronScheduleBuilder daysOfWeek( int... values )
+    {
+        return add( DAYS_OF_WEEK, values );
+    }
+
+    public CronScheduleBuilder daysOfWeekBetween( int first, int last )
+    {
+        return add( DAYS_OF_WEEK, first, last, 1 );
+    }
+
+    public CronScheduleBuilder daysOfWeekBetween( int first, int last, int step )
+    {
+        return add( DAYS_OF_WEEK, first, last, step );
+    }
+
+    public CronScheduleBuilder years( int... values )
+    {
+        return add( YEARS, values );
+    }
+
+    public CronScheduleBuilder yearsBetween( int first, int last )
+    {
+        return add( YEARS, first, last, 1 );
+    }
+
+    public CronScheduleBuilder yearsBetween( int first, int last, int step )
+    {
+        return add( YEARS, first, last, step );
+    }
+
+    /**
+     * The built schedule expression lists values and ranges in the order they were added, eg. 0-30/10,45. Ranges of a
+     * single value are written as that value, as a lone value with a step would mean a range up to the maximum.
+     *
+     * @return A new CronSchedule
+     * @throws IllegalArgumentException if a value is out of the range allowed by its field, if a range end is before
+     *                                  its start or if a step is not strictly positive
+     */
+    public CronSchedule build()
+    {
+        return new CronSchedule( new Source() );
+    }
+
+    private CronScheduleBuilder add( int field, int... values )
+    {
+        if( values == null || values.length == 0 )
+        {
+            throw new IllegalArgumentException( "At least one value must be given" );
+        }
+        for( int value : values )
+        {
+            add( field, value, value, 1 );
+        }
+        return this;
+    }
+
+    private CronScheduleBuilder add( int field, int first, int last, int step )
+    {
+        int[] fieldRanges = ranges[field];
+        int count = rangesCounts[field];
+        if( fieldRanges == null )
+        {
+            fieldRanges = ranges[field] = new int[ 3 ];
+        }
+        else if( fieldRanges.length == count * 3 )
+        {
+            fieldRanges = ranges[field] = Arrays.copyOf( fieldRanges, count * 6 );
+        }
+        fieldRanges[count * 3] = first;
+        fieldRanges[count * 3 + 1] = last;
+        fieldRanges[count * 3 + 2] = step;
+        rangesCounts[field] = count + 1;
+        return this;
+    }
+
+    /**
+     * Fills atoms from the ranges of the builder and writes the matching normalized expression.
+     */
+    private final class Source
+        implements CronAtomSource
+    {
+        private final StringBuilder expression = new StringBuilder( 32 );
+        private int field = 0;
+
+        @Override
+        public boolean nextAtom( AbstractCronAtom atom )
+        {
+            if( field > 0 )
+            {
+                expression.append( ' ' );
+            }
+            int count = rangesCounts[field];
+            if( count == 0 )
+            {
+                atom.addPossibleValues( atom.minAllowed(), atom.maxAllowed(), 1 );
+                expression.append( '*' );
+            }
+            int[] fieldRanges = ranges[field];
+            for( int idx = 0; idx < count; idx++ )
+            {
+                int first = fieldRanges[idx * 3];
+                int last = fieldRanges[idx * 3 + 1];
+                int step = fieldRanges[idx * 3 + 2];
+                validate( atom, first );
+                validate( atom, last );
+                if( last < first )
+                {
+                    throw new IllegalArgumentException( "Range end " + last + " is before its start " + first );
+                }
+                if( step <= 0 )
+                {
+                    throw new IllegalArgumentException( "Step must be strictly positive, found " + step );
+                }
+                atom.addPossibleValues( first, last, step );
+                if( idx > 0 )
+                {
+                    expression.append( ',' );
+                }
+                expression.append( first );
+                if( last != first )
+                {
+                    expression.append( '-' ).append( last );
+                    if( step != 1 )
+                    {
+                        expression.append( '/' ).append( step );
+                    }
+                }
+            }
+            field++;
+            return false;
+        }
+
+        @Override
+        public String end()
+        {
+            return expression.toString();
+        }
+
+        private void validate( AbstractCronAtom atom, int value )
+        {
+            if( value < atom.minAllowed() || value > atom.maxAllowed() )
+            {
+                throw new IllegalArgumentException( "Value " + value + " is out of range [" + atom.minAllowed() + "-"
+                                                    + atom.maxAllowed() + "]" );
+            }
+        }
+    }
+}
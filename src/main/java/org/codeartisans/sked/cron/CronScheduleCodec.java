@@ -0,0 +1,155 @@
+/*
+ * Copyright (c) 2014, Paul Merlin. All Rights Reserved.
+ *
+ * Licensed  under the  Apache License,  Version 2.0  (the "License");
+ * you may not use  this file  except in  compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed  under the  License is distributed on an "AS IS" BASIS,
+ * WITHOUT  WARRANTIES OR CONDITIONS  OF ANY KIND, either  express  or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codeartisans.sked.cron;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * Compact binary form of compiled schedules.
+ *
+ * Version 1 layout, all multi-byte values big endian:
+ * <ul>
+ *      <li>1 byte, version</li>
+ *      <li>1 byte, bit N is set when atom N is ommited using ?</li>
+ *      <li>for each atom in expression order, its possible values bitmask starting at its minimum allowed value, on
+ *          as many bytes as needed, least significant byte first: 8 for seconds and minutes, 3 for hours, 4 for days
+ *          of month, 2 for months, 1 for days of week and 17 for years</li>
+ * </ul>
+ *
+ * Decoding fills atoms directly from their bitmasks, there is no expression to parse. The expression of a decoded
+ * schedule is rebuilt from its atoms, so that it always describes how the schedule runs.
+ */
+/* package */ final class CronScheduleCodec
+    implements CronAtomSource
+{
+    private static final byte VERSION = 1;
+
+    /**
+     * @param atoms Atoms in expression order
+     * @return      The binary form of the given schedule
+     */
+    /* package */ static byte[] encode( CronAtom... atoms )
+    {
+        int size = 2;
+        for( CronAtom atom : atoms )
+        {
+            size += bytesCount( atom );
+        }
+        ByteBuffer buffer = ByteBuffer.allocate( size );
+        buffer.put( VERSION );
+        int ommited = 0;
+        for( int idx = 0; idx < atoms.length; idx++ )
+        {
+            if( ( (AbstractCronAtom) atoms[idx] ).isOmmited() )
+            {
+                ommited |= 1 << idx;
+            }
+        }
+        buffer.put( (byte) ommited );
+        for( CronAtom atom : atoms )
+        {
+            AbstractCronAtom values = (AbstractCronAtom) atom;
+            for( int idx = 0, count = bytesCount( atom ); idx < count; idx++ )
+            {
+                buffer.put( (byte) ( values.possibleValuesWord( idx >> 3 ) >>> ( ( idx & 7 ) << 3 ) ) );
+            }
+        }
+        return buffer.array();
+    }
+
+    private static int bytesCount( CronAtom atom )
+    {
+        return ( atom.maxAllowed() - atom.minAllowed() + 8 ) >> 3;
+    }
+
+    private final ByteBuffer buffer;
+    private final int ommited;
+    private int atomIndex = 0;
+
+    /**
+     * @param bytes Binary form of a schedule
+     * @throws IllegalArgumentException if the given bytes are not a supported binary form
+     */
+    /* package */ CronScheduleCodec( byte[] bytes )
+    {
+        if( bytes == null || bytes.length < 2 )
+        {
+            throw new IllegalArgumentException( "Binary cron schedule is null or truncated" );
+        }
+        this.buffer = ByteBuffer.wrap( bytes );
+        byte version = buffer.get();
+        if( version != VERSION )
+        {
+            throw new IllegalArgumentException( "Unsupported binary cron schedule version " + version );
+        }
+        this.ommited = buffer.get() & 0xFF;
+    }
+
+    @Override
+    public boolean nextAtom( AbstractCronAtom atom )
+    {
+        boolean atomOmmited = ( ommited & ( 1 << atomIndex++ ) ) != 0;
+        if( atomOmmited && !atom.canBeOmmited() )
+        {
+            throw new IllegalArgumentException( "Binary cron schedule has an ommited atom that cannot be" );
+        }
+        try
+        {
+            long word = 0;
+            long any = 0;
+            int count = bytesCount( atom );
+            for( int idx = 0; idx < count; idx++ )
+            {
+                word |= ( buffer.get() & 0xFFL ) << ( ( idx & 7 ) << 3 );
+                if( ( idx & 7 ) == 7 || idx == count - 1 )
+                {
+                    atom.addPossibleValuesWord( idx >> 3, word );
+                    any |= word;
+                    word = 0;
+                }
+            }
+            if( any == 0 && !atomOmmited )
+            {
+                throw new IllegalArgumentException( "Binary cron schedule has an atom without possible values" );
+            }
+            if( any != 0 && atomOmmited )
+            {
+                throw new IllegalArgumentException( "Binary cron schedule has an ommited atom with possible values" );
+            }
+        }
+        catch( BufferUnderflowException ex )
+        {
+            throw new IllegalArgumentException( "Binary cron schedule is truncated", ex );
+        }
+        return atomOmmited;
+    }
+
+    /**
+     * @return null, the expression is rebuilt from the decoded atoms, see {@link AbstractCronAtom#expression()}
+     */
+    @Override
+    public String end()
+    {
+        if( buffer.hasRemaining() )
+        {
+            throw new IllegalArgumentException( "Binary cron schedule has trailing bytes" );
+        }
+        return null;
+    }
+}
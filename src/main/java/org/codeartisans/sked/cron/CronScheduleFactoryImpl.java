@@ -17,7 +17,7 @@
  */
 package org.codeartisans.sked.cron;
 
-import java.util.Calendar;
+import java.time.ZoneId;
 import java.util.Date;
 
 public class CronScheduleFactoryImpl
@@ -50,22 +50,19 @@ public class CronScheduleFactoryImpl
     @Override
     public CronSchedule newInstance( long timestamp )
     {
-        // Rounding up timestamp on seconds
-        long ceiledTimestamp = (long) ( 1000L * Math.ceil( timestamp / 1000 ) );
+        // Truncating timestamp on seconds, in the default time zone
+        long local = CivilTime.toLocalEpochSecond( timestamp, ZoneId.systemDefault().getRules() );
+        long epochDay = Math.floorDiv( local, 86400 );
+        int secondOfDay = Math.floorMod( local, 86400 );
+        long civil = CivilTime.civilFromDays( epochDay );
 
-        // Building Calendar
-        Calendar cal = Calendar.getInstance();
-        cal.setTimeInMillis( ceiledTimestamp );
-
-        // Writing cron expression
-        StringBuilder cronEx = new StringBuilder();
-        cronEx.append( cal.get( Calendar.SECOND ) ).append( " " );
-        cronEx.append( cal.get( Calendar.MINUTE ) ).append( " " );
-        cronEx.append( cal.get( Calendar.HOUR_OF_DAY ) ).append( " " );
-        cronEx.append( cal.get( Calendar.DAY_OF_MONTH ) ).append( " " );
-        cronEx.append( cal.get( Calendar.MONTH ) + 1 ).append( " * " );
-        cronEx.append( cal.get( Calendar.YEAR ) );
-
-        return new CronSchedule( cronEx.toString() );
+        return new CronScheduleBuilder()
+            .seconds( secondOfDay % 60 )
+            .minutes( secondOfDay / 60 % 60 )
+            .hours( secondOfDay / 3600 )
+            .daysOfMonth( CivilTime.dayOfMonth( civil ) )
+            .months( CivilTime.month( civil ) )
+            .years( CivilTime.year( civil ) )
+            .build();
     }
 }
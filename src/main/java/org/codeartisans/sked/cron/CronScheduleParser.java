@@ -0,0 +1,327 @@
+/*
+ * Copyright (c) 2014, Paul Merlin. All Rights Reserved.
+ *
+ * Licensed  under the  Apache License,  Version 2.0  (the "License");
+ * you may not use  this file  except in  compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed  under the  License is distributed on an "AS IS" BASIS,
+ * WITHOUT  WARRANTIES OR CONDITIONS  OF ANY KIND, either  express  or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codeartisans.sked.cron;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Single pass cron expression parser.
+ *
+ * Atoms are parsed in order by their constructors through {@link #nextAtom(AbstractCronAtom)}, possible values are
+ * written directly into the atom being built. Names are resolved to their numeric value and the normalized expression
+ * is accumulated along the way. Errors are reported as IllegalArgumentException with their position in the
+ * expression.
+ */
+/* package */ final class CronScheduleParser
+    implements CronAtomSource
+{
+    private static final Map<String, String> SPECIAL_STRINGS;
+
+    static
+    {
+        Map<String, String> specialStrings = new HashMap<String, String>();
+        specialStrings.put( "@yearly", "0 0 0 1 1 *" );
+        specialStrings.put( "@annualy", "0 0 0 1 1 *" );
+        specialStrings.put( "@monthly", "0 0 0 1 * *" );
+        specialStrings.put( "@weekly", "0 0 0 * * 0" );
+        specialStrings.put( "@daily", "0 0 0 * * *" );
+        specialStrings.put( "@midnight", "0 0 0 * * *" );
+        specialStrings.put( "@hourly", "0 0 * * * *" );
+        specialStrings.put( "@minutely", "0 * * * * *" );
+        SPECIAL_STRINGS = Collections.unmodifiableMap( specialStrings );
+    }
+
+    private static final int ATOMS_COUNT = 7;
+    private static final int MAX_NUMBER_LENGTH = 4;
+
+    private final String expression;
+    private final StringBuilder normalized;
+    private int position = 0;
+    private int atomIndex = 0;
+
+    /* package */ CronScheduleParser( String cronExpression )
+    {
+        if( cronExpression == null || cronExpression.length() <= 0 )
+        {
+            throw new IllegalArgumentException( "Cron expression is null or empty" );
+        }
+        if( isSpace( cronExpression.charAt( 0 ) )
+            || isSpace( cronExpression.charAt( cronExpression.length() - 1 ) ) )
+        {
+            throw new IllegalArgumentException( "Cron expression has heading or trailing spaces" );
+        }
+        if( cronExpression.charAt( 0 ) == '@' )
+        {
+            String specialString = SPECIAL_STRINGS.get( cronExpression );
+            if( specialString == null )
+            {
+                throw new IllegalArgumentException( "Unknown special string in cron expression: " + cronExpression );
+            }
+            this.expression = specialString;
+        }
+        else
+        {
+            this.expression = cronExpression;
+        }
+        this.normalized = new StringBuilder( expression.length() + 2 );
+    }
+
+    /**
+     * Parse the next atom of the expression into the given atom.
+     *
+     * The optional year atom resolves to * when absent.
+     *
+     * @param atom  Atom being built
+     * @return      true if the atom is ommited using ?
+     */
+    @Override
+    public boolean nextAtom( AbstractCronAtom atom )
+    {
+        if( atomIndex > 0 )
+        {
+            if( position == expression.length() && atomIndex == ATOMS_COUNT - 1 )
+            {
+                // Adding optional year
+                atomIndex++;
+                atom.addPossibleValues( atom.minAllowed(), atom.maxAllowed(), 1 );
+                normalized.append( " *" );
+                return false;
+            }
+            if( position == expression.length() )
+            {
+                throw error( "Cron expression must be composed of 6 or 7 atoms, found " + atomIndex );
+            }
+            while( position < expression.length() && isSpace( expression.charAt( position ) ) )
+            {
+                position++;
+            }
+            normalized.append( ' ' );
+        }
+        atomIndex++;
+        if( peek() == '?' )
+        {
+            if( !atom.canBeOmmited() )
+            {
+                throw error( "? is not allowed in this atom" );
+            }
+            position++;
+            normalized.append( '?' );
+            expectAtomEnd();
+            return true;
+        }
+        parseList( atom );
+        return false;
+    }
+
+    /**
+     * @return The normalized expression, once all atoms have been parsed, the parsed expression itself if already
+     *         normalized
+     */
+    @Override
+    public String end()
+    {
+        if( position < expression.length() )
+        {
+            throw error( "Cron expression must be composed of 6 or 7 atoms, found more" );
+        }
+        if( expression.contentEquals( normalized ) )
+        {
+            return expression;
+        }
+        return normalized.toString();
+    }
+
+    private void parseList( AbstractCronAtom atom )
+    {
+        while( true )
+        {
+            int start;
+            int stop;
+            boolean single = false;
+            if( peek() == '*' )
+            {
+                position++;
+                normalized.append( '*' );
+                start = atom.minAllowed();
+                stop = atom.maxAllowed();
+            }
+            else
+            {
+                start = parseValue( atom );
+                stop = start;
+                if( peek() == '-' )
+                {
+                    position++;
+                    normalized.append( '-' );
+                    int stopPosition = position;
+                    stop = parseValue( atom );
+                    if( stop < start )
+                    {
+                        throw error( "Range end is before its start", stopPosition );
+                    }
+                }
+                else
+                {
+                    single = true;
+                }
+            }
+            int step = 1;
+            if( peek() == '/' )
+            {
+                position++;
+                normalized.append( '/' );
+                int stepPosition = position;
+                step = parseNumber();
+                if( step <= 0 )
+                {
+                    throw error( "Step must be strictly positive", stepPosition );
+                }
+                if( single )
+                {
+                    // <number>/<step> means start a range at <number> and use <step>
+                    stop = atom.maxAllowed();
+                }
+            }
+            atom.addPossibleValues( start, stop, step );
+            if( peek() == ',' )
+            {
+                position++;
+                normalized.append( ',' );
+                continue;
+            }
+            expectAtomEnd();
+            return;
+        }
+    }
+
+    private int parseValue( AbstractCronAtom atom )
+    {
+        int valuePosition = position;
+        int value;
+        if( isLetter( peek() ) )
+        {
+            value = parseName( atom );
+        }
+        else
+        {
+            value = parseNumber();
+        }
+        if( value < atom.minAllowed() || value > atom.maxAllowed() )
+        {
+            throw error( "Value " + value + " is out of range [" + atom.minAllowed() + "-" + atom.maxAllowed() + "]",
+                         valuePosition );
+        }
+        return value;
+    }
+
+    private int parseNumber()
+    {
+        int start = position;
+        int value = 0;
+        while( position < expression.length() && isDigit( expression.charAt( position ) ) )
+        {
+            value = value * 10 + expression.charAt( position ) - '0';
+            position++;
+        }
+        if( position == start )
+        {
+            throw unexpected();
+        }
+        if( position - start > MAX_NUMBER_LENGTH )
+        {
+            throw error( "Number is too long", start );
+        }
+        normalized.append( expression, start, position );
+        return value;
+    }
+
+    private int parseName( AbstractCronAtom atom )
+    {
+        int start = position;
+        while( position < expression.length() && isLetter( expression.charAt( position ) ) )
+        {
+            position++;
+        }
+        String[] names = atom.names();
+        if( names != null )
+        {
+            for( int idx = 0; idx < names.length; idx++ )
+            {
+                if( expression.regionMatches( true, start, names[idx], 0, position - start )
+                    && names[idx].length() == position - start )
+                {
+                    int value = idx + 1;
+                    normalized.append( value );
+                    return value;
+                }
+            }
+        }
+        throw error( "Unknown name '" + expression.substring( start, position ) + "'", start );
+    }
+
+    private void expectAtomEnd()
+    {
+        if( position < expression.length() && !isSpace( expression.charAt( position ) ) )
+        {
+            throw unexpected();
+        }
+    }
+
+    private char peek()
+    {
+        return position < expression.length() ? expression.charAt( position ) : 0;
+    }
+
+    private IllegalArgumentException unexpected()
+    {
+        if( position == expression.length() )
+        {
+            return error( "Unexpected end of atom" );
+        }
+        return error( "Unexpected character '" + expression.charAt( position ) + "'" );
+    }
+
+    private IllegalArgumentException error( String message )
+    {
+        return error( message, position );
+    }
+
+    private IllegalArgumentException error( String message, int errorPosition )
+    {
+        return new IllegalArgumentException( message + " at position " + errorPosition
+                                             + " in cron expression: " + expression );
+    }
+
+    private static boolean isSpace( char c )
+    {
+        // Same as \s in regular expressions
+        return c == ' ' || c == '\t' || c == '\n' || c == 0x0B || c == '\f' || c == '\r';
+    }
+
+    private static boolean isDigit( char c )
+    {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isLetter( char c )
+    {
+        return ( c >= 'a' && c <= 'z' ) || ( c >= 'A' && c <= 'Z' );
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2014, Paul Merlin. All Rights Reserved.
+ *
+ * Licensed  under the  Apache License,  Version 2.0  (the "License");
+ * you may not use  this file  except in  compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed  under the  License is distributed on an "AS IS" BASIS,
+ * WITHOUT  WARRANTIES OR CONDITIONS  OF ANY KIND, either  express  or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codeartisans.sked.cron;
+
+import java.time.ZoneId;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.function.LongSupplier;
+
+/**
+ * Schedules tasks according to CronSchedules on a ScheduledExecutorService.
+ *
+ * Each run is a one-shot task of the executor that, when triggered, arms the next one before running the task. The
+ * next run is computed from the planned time of the current one, not from the time the task completes, so runs never
+ * drift, and the task duration does not delay arming. Overlapping runs are handled according to a CronOverlapPolicy.
+ *
+ * As with {@link ScheduledExecutorService#scheduleAtFixedRate}, if a run throws, later runs are suppressed and the
+ * returned future completes exceptionally. The future completes normally once the schedule will not run anymore and
+ * its last run completed. If the executor rejects the trigger of a run, typically while shutting down, the run
+ * already due still runs as the last one, then the future completes exceptionally with the rejection.
+ */
+public final class CronScheduledExecutor
+{
+    private final ScheduledExecutorService executor;
+    private final ZoneId zone;
+    /**
+     * Current time in milliseconds since the epoch, {@link System#currentTimeMillis()} outside of tests.
+     */
+    private final LongSupplier clock;
+
+    /**
+     * @param executor  Executor running the tasks
+     */
+    public CronScheduledExecutor( ScheduledExecutorService executor )
+    {
+        this( executor, ZoneId.systemDefault() );
+    }
+
+    /**
+     * @param executor  Executor running the tasks
+     * @param zone      Zone in which schedules are evaluated
+     */
+    public CronScheduledExecutor( ScheduledExecutorService executor, ZoneId zone )
+    {
+        this( executor, zone, System::currentTimeMillis );
+    }
+
+    /**
+     * @param executor  Executor running the tasks
+     * @param zone      Zone in which schedules are evaluated
+     * @param clock     Current time in milliseconds since the epoch, consistent with the delays of the executor
+     */
+    /* package */ CronScheduledExecutor( ScheduledExecutorService executor, ZoneId zone, LongSupplier clock )
+    {
+        if( executor == null || zone == null )
+        {
+            throw new IllegalArgumentException( "Executor and zone must not be null" );
+        }
+        this.executor = executor;
+        this.zone = zone;
+        this.clock = clock;
+    }
+
+    /**
+     * Schedule a task, skipping runs that overlap a run in progress.
+     *
+     * @param task      Task
+     * @param schedule  Schedule of the task, runs start after the current second
+     * @return          Future of the task, cancelling it stops the task
+     * @throws java.util.concurrent.RejectedExecutionException if the executor does not accept the task
+     */
+    public ScheduledFuture<?> schedule( Runnable task, CronSchedule schedule )
+    {
+        return schedule( task, schedule, CronOverlapPolicy.SKIP );
+    }
+
+    /**
+     * @param task      Task
+     * @param schedule  Schedule of the task, runs start after the current second
+     * @param policy    Policy applied to runs that overlap a run in progress
+     * @return          Future of the task, cancelling it stops the task
+     * @throws java.util.concurrent.RejectedExecutionException if the executor does not accept the task
+     */
+    public ScheduledFuture<?> schedule( Runnable task, CronSchedule schedule, CronOverlapPolicy policy )
+    {
+        if( task == null || schedule == null || policy == null )
+        {
+            throw new IllegalArgumentException( "Task, schedule and policy must not be null" );
+        }
+        CronScheduledFuture future = new CronScheduledFuture( executor, zone, clock, task, schedule, policy );
+        future.start( clock.getAsLong() );
+        return future;
+    }
+}
@@ -0,0 +1,327 @@
+/*
+ * Copyright (c) 2014, Paul Merlin. All Rights Reserved.
+ *
+ * Licensed  under the  Apache License,  Version 2.0  (the "License");
+ * you may not use  this file  except in  compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed  under the  License is distributed on an "AS IS" BASIS,
+ * WITHOUT  WARRANTIES OR CONDITIONS  OF ANY KIND, either  express  or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codeartisans.sked.cron;
+
+import java.time.ZoneId;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+
+/**
+ * Future of a task scheduled by CronScheduledExecutor, it is also the trigger of each run.
+ */
+/* package */ final class CronScheduledFuture
+    implements ScheduledFuture<Object>, Runnable
+{
+    private final ScheduledExecutorService executor;
+    private final ZoneId zone;
+    private final LongSupplier clock;
+    private final Runnable task;
+    private final CronSchedule schedule;
+    private final CronOverlapPolicy policy;
+    private final CompletableFuture<Object> done = new CompletableFuture<Object>();
+    /**
+     * Runs in progress or queued, queued runs are coalesced so that there is at most one with the QUEUE policy.
+     */
+    private final AtomicInteger active = new AtomicInteger();
+    /**
+     * Threads running the task, guarded by itself so that cancelling only interrupts threads still running it.
+     */
+    private final Set<Thread> runners = new HashSet<Thread>();
+    /**
+     * Whether runners were interrupted by cancelling, guarded by runners.
+     */
+    private boolean interrupted;
+    /**
+     * Planned time of the next trigger, written by the trigger before it arms the next one.
+     */
+    private volatile long planned;
+    private volatile ScheduledFuture<?> trigger;
+    private volatile boolean exhausted;
+    /**
+     * Rejection of the trigger of the next run, the future fails with it once the last run completes.
+     */
+    private volatile RejectedExecutionException rejection;
+
+    /* package */ CronScheduledFuture( ScheduledExecutorService executor, ZoneId zone, LongSupplier clock,
+                                       Runnable task, CronSchedule schedule, CronOverlapPolicy policy )
+    {
+        this.executor = executor;
+        this.zone = zone;
+        this.clock = clock;
+        this.task = task;
+        this.schedule = schedule;
+        this.policy = policy;
+    }
+
+    /* package */ void start( long epochMillis )
+    {
+        if( !arm( epochMillis ) )
+        {
+            // No run at all
+            exhausted = true;
+            done.complete( null );
+        }
+    }
+
+    @Override
+    public void run()
+    {
+        if( done.isDone() )
+        {
+            return;
+        }
+        boolean last;
+        try
+        {
+            last = !arm( planned );
+        }
+        catch( RejectedExecutionException ex )
+        {
+            // Typically while the executor shuts down, the current run is due so it runs as the last one
+            rejection = ex;
+            last = true;
+        }
+        // The last trigger marks the schedule exhausted only once it counts as active, so that a run ending
+        // meanwhile does not complete this future before the last run
+        switch( policy )
+        {
+            case SKIP:
+                if( active.compareAndSet( 0, 1 ) )
+                {
+                    markExhausted( last );
+                    runTask();
+                    endRun();
+                }
+                else
+                {
+                    skipRun( last );
+                }
+                break;
+            case QUEUE:
+                int queued;
+                do
+                {
+                    queued = active.get();
+                }
+                while( queued < 2 && !active.compareAndSet( queued, queued + 1 ) );
+                if( queued >= 2 )
+                {
+                    // A run is already queued, this one is coalesced with it
+                    skipRun( last );
+                }
+                else
+                {
+                    markExhausted( last );
+                    if( queued == 0 )
+                    {
+                        do
+                        {
+                            runTask();
+                        }
+                        while( endRun() > 0 );
+                    }
+                }
+                break;
+            default:
+                active.incrementAndGet();
+                markExhausted( last );
+                runTask();
+                endRun();
+        }
+    }
+
+    /**
+     * Drop the current run, completing this future if it was the last one and no run is active anymore.
+     */
+    private void skipRun( boolean last )
+    {
+        if( last )
+        {
+            exhausted = true;
+            if( active.get() == 0 )
+            {
+                complete();
+            }
+        }
+    }
+
+    /**
+     * The flag is never reset: when the executor is late, triggers run concurrently and the last one may not be the
+     * last to mark it.
+     */
+    private void markExhausted( boolean last )
+    {
+        if( last )
+        {
+            exhausted = true;
+        }
+    }
+
+    /**
+     * Arm the trigger of the first run after the given time.
+     *
+     * @return false if there is no such run
+     */
+    private boolean arm( long after )
+    {
+        long next = schedule.nextFire( after, zone );
+        if( next == CronSchedule.NEVER )
+        {
+            return false;
+        }
+        planned = next;
+        trigger = executor.schedule( this, next - clock.getAsLong(), TimeUnit.MILLISECONDS );
+        if( done.isDone() )
+        {
+            // Cancelled while arming
+            trigger.cancel( false );
+        }
+        return true;
+    }
+
+    private void runTask()
+    {
+        Thread runner = Thread.currentThread();
+        synchronized( runners )
+        {
+            if( done.isDone() )
+            {
+                return;
+            }
+            runners.add( runner );
+        }
+        try
+        {
+            task.run();
+        }
+        catch( RuntimeException | Error ex )
+        {
+            done.completeExceptionally( ex );
+            trigger.cancel( false );
+        }
+        finally
+        {
+            synchronized( runners )
+            {
+                runners.remove( runner );
+                if( interrupted )
+                {
+                    // The interrupt was meant for this run, not for the next task of the thread
+                    Thread.interrupted();
+                }
+            }
+        }
+    }
+
+    /**
+     * @return Count of remaining runs in progress or queued
+     */
+    private int endRun()
+    {
+        int remaining = active.decrementAndGet();
+        if( remaining == 0 && exhausted )
+        {
+            complete();
+        }
+        return remaining;
+    }
+
+    private void complete()
+    {
+        RejectedExecutionException rejected = rejection;
+        if( rejected != null )
+        {
+            done.completeExceptionally( rejected );
+        }
+        else
+        {
+            done.complete( null );
+        }
+    }
+
+    @Override
+    public long getDelay( TimeUnit unit )
+    {
+        return unit.convert( planned - clock.getAsLong(), TimeUnit.MILLISECONDS );
+    }
+
+    @Override
+    public int compareTo( Delayed other )
+    {
+        return Long.compare( getDelay( TimeUnit.MILLISECONDS ), other.getDelay( TimeUnit.MILLISECONDS ) );
+    }
+
+    @Override
+    public boolean cancel( boolean mayInterruptIfRunning )
+    {
+        boolean cancelled = done.cancel( false );
+        ScheduledFuture<?> current = trigger;
+        if( current != null )
+        {
+            current.cancel( false );
+        }
+        if( cancelled && mayInterruptIfRunning )
+        {
+            synchronized( runners )
+            {
+                interrupted = true;
+                for( Thread runner : runners )
+                {
+                    runner.interrupt();
+                }
+            }
+        }
+        return cancelled;
+    }
+
+    @Override
+    public boolean isCancelled()
+    {
+        return done.isCancelled();
+    }
+
+    @Override
+    public boolean isDone()
+    {
+        return done.isDone();
+    }
+
+    @Override
+    public Object get()
+        throws InterruptedException, ExecutionException
+    {
+        return done.get();
+    }
+
+    @Override
+    public Object get( long timeout, TimeUnit unit )
+        throws InterruptedException, ExecutionException, TimeoutException
+    {
+        return done.get( timeout, unit );
+    }
+}
@@ -0,0 +1,200 @@
+/*
+ * Copyright (c) 2014, Paul Merlin. All Rights Reserved.
+ *
+ * Licensed  under the  Apache License,  Version 2.0  (the "License");
+ * you may not use  this file  except in  compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed  under the  License is distributed on an "AS IS" BASIS,
+ * WITHOUT  WARRANTIES OR CONDITIONS  OF ANY KIND, either  express  or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codeartisans.sked.cron;
+
+import java.time.ZoneId;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+
+/**
+ * Runs tasks according to CronSchedules.
+ *
+ * Registered jobs are kept in a CronTimingWheel owned by a dispatcher thread, so that registering, cancelling and
+ * expiring a job are constant time operations whatever the count of registered jobs. Registrations, cancellations and
+ * reschedulings are handed to the dispatcher through a lock free queue.
+ *
+ * Jobs whose schedules have the same runs share a CronTrigger, the wheel holds one timer per distinct schedule. Each
+ * time a trigger fires the tasks of its jobs are handed to the executor, and the trigger is re-armed with the next run
+ * of its schedule after the current second. Run times are always taken from the schedule so they never drift. When
+ * the dispatcher is late, eg. after the host was suspended, missed runs of a job are coalesced into a single run.
+ * Triggers whose schedules will not run anymore are dropped along with their jobs, see {@link CronJob#isExhausted()}.
+ *
+ * When a single dispatcher thread is not enough, jobs can be spread across shards in turn, each shard having its own
+ * dispatcher thread, wheel and registration queue. Jobs with the same runs are coalesced within each shard, so that
+ * the fan-out of a popular schedule, eg. every {@literal @minutely} job, is split across all dispatcher threads. A
+ * rescheduled job stays in its shard.
+ *
+ * Tasks should not run on the dispatcher threads, use an executor that runs them on other threads. With a
+ * {@link java.util.concurrent.ForkJoinPool}, large fires are handed as a single task that pool workers split and steal.
+ * For blocking tasks prefer an executor running each task on a virtual thread, see {@link CronExecutors}.
+ */
+public final class CronScheduler
+    implements AutoCloseable
+{
+    private final CronSchedulerShard[] shards;
+    /**
+     * Shard of the next registered job, taken in turn.
+     */
+    private final AtomicInteger nextShard = new AtomicInteger();
+    private volatile boolean shutdown;
+
+    /**
+     * @param executor  Executor running the tasks
+     */
+    public CronScheduler( Executor executor )
+    {
+        this( executor, ZoneId.systemDefault() );
+    }
+
+    /**
+     * @param executor  Executor running the tasks
+     * @param zone      Zone in which schedules are evaluated
+     */
+    public CronScheduler( Executor executor, ZoneId zone )
+    {
+        this( executor, zone, 1 );
+    }
+
+    /**
+     * @param executor  Executor running the tasks
+     * @param zone      Zone in which schedules are evaluated
+     * @param shards    Count of shards, each with its own dispatcher thread, eg. the count of available processors
+     */
+    public CronScheduler( Executor executor, ZoneId zone, int shards )
+    {
+        this( executor, zone, shards, System::currentTimeMillis );
+    }
+
+    /**
+     * @param executor  Executor running the tasks
+     * @param zone      Zone in which schedules are evaluated
+     * @param shards    Count of shards
+     * @param clock     Current time in milliseconds since the epoch, tests move it by hand, see {@link #wakeUp()}
+     */
+    /* package */ CronScheduler( Executor executor, ZoneId zone, int shards, LongSupplier clock )
+    {
+        if( executor == null || zone == null )
+        {
+            throw new IllegalArgumentException( "Executor and zone must not be null" );
+        }
+        if( shards <= 0 )
+        {
+            throw new IllegalArgumentException( "Shards count must be strictly positive, found " + shards );
+        }
+        this.shards = new CronSchedulerShard[ shards ];
+        for( int idx = 0; idx < shards; idx++ )
+        {
+            String name = shards == 1 ? "sked-cron-scheduler" : "sked-cron-scheduler-" + idx;
+            this.shards[idx] = new CronSchedulerShard( executor, zone, clock, name );
+        }
+    }
+
+    /**
+     * @param schedule  Schedule
+     * @param task      Task to run on each run of the schedule, after the current second
+     * @return          The registered job
+     * @throws IllegalStateException if this scheduler is shut down
+     */
+    public CronJob schedule( CronSchedule schedule, Runnable task )
+    {
+        return schedule( schedule, task, 0 );
+    }
+
+    /**
+     * Runs beyond the maximum concurrency wait for a permit on the executor thread they were handed to, this is cheap
+     * with virtual threads, see {@link CronExecutors#newVirtualThreadPerTaskExecutor()}. On a ForkJoinPool, the wait is
+     * managed so that the pool can compensate blocked workers.
+     *
+     * @param schedule          Schedule
+     * @param task              Task to run on each run of the schedule, after the current second
+     * @param maxConcurrency    Maximum count of concurrent runs of the task, unbounded if not strictly positive
+     * @return                  The registered job
+     * @throws IllegalStateException if this scheduler is shut down
+     */
+    public CronJob schedule( CronSchedule schedule, Runnable task, int maxConcurrency )
+    {
+        if( schedule == null || task == null )
+        {
+            throw new IllegalArgumentException( "Schedule and task must not be null" );
+        }
+        if( shutdown )
+        {
+            throw new IllegalStateException( "Scheduler is shut down" );
+        }
+        CronSchedulerShard shard = shards[Math.floorMod( nextShard.getAndIncrement(), shards.length )];
+        CronJob job = new CronJob( shard, schedule, task, maxConcurrency );
+        shard.update( job );
+        return job;
+    }
+
+    /**
+     * Have the dispatchers look at the clock again, used by tests once they moved the clock.
+     */
+    /* package */ void wakeUp()
+    {
+        for( CronSchedulerShard shard : shards )
+        {
+            shard.wakeUp();
+        }
+    }
+
+    /**
+     * Stop firing jobs, runs already handed to the executor are not interrupted.
+     */
+    public void shutdown()
+    {
+        shutdown = true;
+        for( CronSchedulerShard shard : shards )
+        {
+            shard.shutdown();
+        }
+    }
+
+    public boolean isShutdown()
+    {
+        return shutdown;
+    }
+
+    /**
+     * @param timeout   Maximum time to wait
+     * @param unit      Unit of the timeout
+     * @return          true if all dispatchers have terminated
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public boolean awaitTermination( long timeout, TimeUnit unit )
+        throws InterruptedException
+    {
+        long deadline = System.nanoTime() + unit.toNanos( timeout );
+        for( CronSchedulerShard shard : shards )
+        {
+            if( !shard.awaitTermination( deadline ) )
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void close()
+    {
+        shutdown();
+    }
+}
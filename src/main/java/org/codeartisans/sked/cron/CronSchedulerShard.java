@@ -0,0 +1,179 @@
+/*
+ * Copyright (c) 2014, Paul Merlin. All Rights Reserved.
+ *
+ * Licensed  under the  Apache License,  Version 2.0  (the "License");
+ * you may not use  this file  except in  compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed  under the  License is distributed on an "AS IS" BASIS,
+ * WITHOUT  WARRANTIES OR CONDITIONS  OF ANY KIND, either  express  or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codeartisans.sked.cron;
+
+import java.time.ZoneId;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.LongSupplier;
+
+/**
+ * Shard of a CronScheduler, with its own dispatcher thread, timing wheel and triggers.
+ *
+ * Job registrations, cancellations and reschedulings are handed to the dispatcher through a lock free queue, the
+ * wheel and the triggers are only used by the dispatcher thread.
+ */
+/* package */ final class CronSchedulerShard
+{
+    private final Executor executor;
+    private final ZoneId zone;
+    /**
+     * Current time in milliseconds since the epoch, {@link System#currentTimeMillis()} outside of tests.
+     */
+    private final LongSupplier clock;
+    private final Queue<CronJob> updates = new ConcurrentLinkedQueue<CronJob>();
+    private final CronTimingWheel wheel;
+    private final Map<CronTrigger, CronTrigger> triggers = new HashMap<CronTrigger, CronTrigger>();
+    private final Thread dispatcher;
+    private volatile boolean shutdown;
+    /**
+     * Second the dispatcher is advancing to, fired triggers are re-armed after it.
+     */
+    private long dispatchSecond;
+
+    /* package */ CronSchedulerShard( Executor executor, ZoneId zone, LongSupplier clock, String name )
+    {
+        this.executor = executor;
+        this.zone = zone;
+        this.clock = clock;
+        this.dispatchSecond = currentSecond();
+        this.wheel = new CronTimingWheel( dispatchSecond );
+        this.dispatcher = new Thread( this::dispatch, name );
+        this.dispatcher.setDaemon( true );
+        this.dispatcher.start();
+    }
+
+    /* package */ void update( CronJob job )
+    {
+        updates.offer( job );
+        LockSupport.unpark( dispatcher );
+    }
+
+    /**
+     * Have the dispatcher look at the clock again, used by tests moving the clock.
+     */
+    /* package */ void wakeUp()
+    {
+        LockSupport.unpark( dispatcher );
+    }
+
+    /* package */ void shutdown()
+    {
+        shutdown = true;
+        LockSupport.unpark( dispatcher );
+    }
+
+    /**
+     * @param deadline  Time to wait until, as given by {@link System#nanoTime()}
+     * @return          true if the dispatcher has terminated
+     * @throws InterruptedException if interrupted while waiting
+     */
+    /* package */ boolean awaitTermination( long deadline )
+        throws InterruptedException
+    {
+        long millis = TimeUnit.NANOSECONDS.toMillis( deadline - System.nanoTime() );
+        dispatcher.join( Math.max( 1, millis ) );
+        return !dispatcher.isAlive();
+    }
+
+    private void dispatch()
+    {
+        while( !shutdown )
+        {
+            dispatchSecond = currentSecond();
+            wheel.advance( dispatchSecond, this::fire );
+            applyUpdates();
+            long next = wheel.nextEventTime();
+            if( next == CronSchedule.NEVER )
+            {
+                LockSupport.park( this );
+            }
+            else if( next > dispatchSecond )
+            {
+                long delay = next * 1000 - clock.getAsLong();
+                if( delay > 0 )
+                {
+                    LockSupport.parkNanos( this, TimeUnit.MILLISECONDS.toNanos( delay ) );
+                }
+            }
+        }
+    }
+
+    private void applyUpdates()
+    {
+        CronJob job;
+        while( ( job = updates.poll() ) != null )
+        {
+            CronTrigger trigger = job.trigger;
+            if( trigger != null )
+            {
+                trigger.remove( job );
+                if( trigger.size() == 0 )
+                {
+                    wheel.remove( trigger );
+                    triggers.remove( trigger );
+                }
+            }
+            if( !job.isCancelled() )
+            {
+                job.exhausted = false;
+                trigger = new CronTrigger( job.schedule() );
+                CronTrigger existing = triggers.putIfAbsent( trigger, trigger );
+                if( existing == null )
+                {
+                    trigger.add( job );
+                    arm( trigger );
+                }
+                else
+                {
+                    existing.add( job );
+                }
+            }
+        }
+    }
+
+    private void fire( CronTimer timer )
+    {
+        CronTrigger trigger = (CronTrigger) timer;
+        trigger.fire( executor );
+        arm( trigger );
+    }
+
+    private void arm( CronTrigger trigger )
+    {
+        long next = trigger.schedule().nextFire( dispatchSecond * 1000, zone );
+        if( next == CronSchedule.NEVER )
+        {
+            // The schedule will not run anymore, its jobs are dropped until rescheduled
+            triggers.remove( trigger );
+            trigger.exhaust();
+            return;
+        }
+        wheel.add( trigger, next / 1000 );
+    }
+
+    private long currentSecond()
+    {
+        return Math.floorDiv( clock.getAsLong(), 1000 );
+    }
+}
@@ -0,0 +1,43 @@
+/*
+ * Copyright (c) 2014, Paul Merlin. All Rights Reserved.
+ *
+ * Licensed  under the  Apache License,  Version 2.0  (the "License");
+ * you may not use  this file  except in  compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed  under the  License is distributed on an "AS IS" BASIS,
+ * WITHOUT  WARRANTIES OR CONDITIONS  OF ANY KIND, either  express  or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codeartisans.sked.cron;
+
+/**
+ * Entry of a CronTimingWheel, linked in place in the bucket of its deadline so that it is added and removed in
+ * constant time, without allocation.
+ *
+ * Only the thread owning the wheel may read or write these fields.
+ */
+/* package */ class CronTimer
+{
+    /**
+     * Epoch second at which this timer expires.
+     */
+    /* package */ long deadline;
+    /* package */ int bucket = CronTimingWheel.NONE;
+    /* package */ CronTimer previous;
+    /* package */ CronTimer next;
+
+    /**
+     * @return true if this timer is in a wheel
+     */
+    /* package */ final boolean isArmed()
+    {
+        return bucket != CronTimingWheel.NONE;
+    }
+}
@@ -0,0 +1,298 @@
+/*
+ * Copyright (c) 2014, Paul Merlin. All Rights Reserved.
+ *
+ * Licensed  under the  Apache License,  Version 2.0  (the "License");
+ * you may not use  this file  except in  compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed  under the  License is distributed on an "AS IS" BASIS,
+ * WITHOUT  WARRANTIES OR CONDITIONS  OF ANY KIND, either  express  or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codeartisans.sked.cron;
+
+import java.util.function.Consumer;
+
+/**
+ * Hierarchical timing wheel of CronTimers, with a resolution of one second.
+ *
+ * The wheel has four levels of 256 slots. A timer is placed at the level of the highest 8 bits group where its deadline
+ * differs from the current time, in the slot given by the deadline bits of that group. When the current time reaches
+ * the start of a slot of an upper level, the timers of that slot are cascaded down, timers of the lowest level slot of
+ * the current time are expired. Adding and removing a timer are constant time operations, expiring a timer is
+ * constant amortized time as it is cascaded at most once per level.
+ *
+ * Timers more than 2^32 seconds ahead are kept in an overflow bucket revisited every 2^32 seconds. Timers whose
+ * deadline is not after the current time are kept in a due bucket, expired on the next advance.
+ *
+ * Empty slots are never visited: the occupied slots are tracked in bitmasks and time jumps from one occupied slot to
+ * the next. This class is not thread safe.
+ */
+/* package */ final class CronTimingWheel
+{
+    private static final int SLOT_BITS = 8;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int SLOT_MASK = SLOTS - 1;
+    private static final int LEVELS = 4;
+    private static final int WHEEL_BITS = LEVELS * SLOT_BITS;
+    /* package */ static final int NONE = -1;
+    private static final int DUE = LEVELS * SLOTS;
+    private static final int OVERFLOW = DUE + 1;
+
+    /**
+     * Heads of the timer lists of each bucket, slots of all levels then due and overflow.
+     */
+    private final CronTimer[] heads = new CronTimer[ OVERFLOW + 1 ];
+    /**
+     * Bit N is set when slot N of the levels is occupied.
+     */
+    private final long[] occupied = new long[ DUE >> 6 ];
+    private long now;
+    private int size;
+
+    /**
+     * @param now   Current epoch second, not negative
+     */
+    /* package */ CronTimingWheel( long now )
+    {
+        if( now < 0 )
+        {
+            throw new IllegalArgumentException( "Timing wheel time must not be negative, found " + now );
+        }
+        this.now = now;
+    }
+
+    /**
+     * @return Current epoch second of this wheel
+     */
+    /* package */ long now()
+    {
+        return now;
+    }
+
+    /**
+     * @return Count of timers in this wheel
+     */
+    /* package */ int size()
+    {
+        return size;
+    }
+
+    /**
+     * Add a timer, moving it if it is already in this wheel.
+     *
+     * @param timer     Timer
+     * @param deadline  Epoch second at which the timer expires, expires on the next advance if not after now
+     */
+    /* package */ void add( CronTimer timer, long deadline )
+    {
+        if( timer.isArmed() )
+        {
+            unlink( timer );
+            size--;
+        }
+        timer.deadline = deadline;
+        link( timer, bucketOf( deadline ) );
+        size++;
+    }
+
+    /**
+     * @param timer Timer
+     * @return      true if the timer was in this wheel
+     */
+    /* package */ boolean remove( CronTimer timer )
+    {
+        if( !timer.isArmed() )
+        {
+            return false;
+        }
+        unlink( timer );
+        size--;
+        return true;
+    }
+
+    /**
+     * @return Epoch second of the next expiry or cascade, {@link CronSchedule#NEVER} if this wheel is empty
+     */
+    /* package */ long nextEventTime()
+    {
+        if( heads[DUE] != null )
+        {
+            return now;
+        }
+        for( int level = 0; level < LEVELS; level++ )
+        {
+            int shift = level * SLOT_BITS;
+            int slot = nextOccupiedSlot( level, ( (int) ( now >>> shift ) & SLOT_MASK ) + 1 );
+            if( slot >= 0 )
+            {
+                // Events of a level all come before the next cascade of the level above
+                return ( now >>> ( shift + SLOT_BITS ) << ( shift + SLOT_BITS ) ) | ( (long) slot << shift );
+            }
+        }
+        if( heads[OVERFLOW] != null )
+        {
+            return ( ( now >>> WHEEL_BITS ) + 1 ) << WHEEL_BITS;
+        }
+        return CronSchedule.NEVER;
+    }
+
+    /**
+     * Advance the current time, expiring timers in deadline order.
+     *
+     * Expired timers are removed from this wheel before being given to the consumer, which can add them back. When
+     * the consumer is called the current time is the deadline of the expired timer, or later if it was due.
+     *
+     * @param to        Epoch second to advance to, nothing happens if it is before now
+     * @param expired   Consumer of expired timers
+     */
+    /* package */ void advance( long to, Consumer<? super CronTimer> expired )
+    {
+        long time = nextEventTime();
+        while( time <= to )
+        {
+            if( time == now )
+            {
+                expire( DUE, expired );
+            }
+            else
+            {
+                now = time;
+                if( ( time & ( ( 1L << WHEEL_BITS ) - 1 ) ) == 0 )
+                {
+                    cascade( OVERFLOW );
+                }
+                for( int level = LEVELS - 1; level > 0; level-- )
+                {
+                    int shift = level * SLOT_BITS;
+                    if( ( time & ( ( 1L << shift ) - 1 ) ) == 0 )
+                    {
+                        cascade( level * SLOTS + ( (int) ( time >>> shift ) & SLOT_MASK ) );
+                    }
+                }
+                expire( (int) time & SLOT_MASK, expired );
+            }
+            time = nextEventTime();
+        }
+        if( to > now )
+        {
+            now = to;
+        }
+    }
+
+    private int bucketOf( long deadline )
+    {
+        if( deadline <= now )
+        {
+            return DUE;
+        }
+        int level = ( 63 - Long.numberOfLeadingZeros( deadline ^ now ) ) / SLOT_BITS;
+        if( level >= LEVELS )
+        {
+            return OVERFLOW;
+        }
+        return level * SLOTS + ( (int) ( deadline >>> ( level * SLOT_BITS ) ) & SLOT_MASK );
+    }
+
+    private int nextOccupiedSlot( int level, int from )
+    {
+        int base = level * ( SLOTS >> 6 );
+        for( int word = from >> 6; word < SLOTS >> 6; word++ )
+        {
+            long bits = occupied[base + word];
+            if( word == from >> 6 )
+            {
+                bits &= -1L << from;
+            }
+            if( bits != 0 )
+            {
+                return ( word << 6 ) + Long.numberOfTrailingZeros( bits );
+            }
+        }
+        return -1;
+    }
+
+    private void link( CronTimer timer, int bucket )
+    {
+        CronTimer head = heads[bucket];
+        timer.bucket = bucket;
+        timer.previous = null;
+        timer.next = head;
+        if( head != null )
+        {
+            head.previous = timer;
+        }
+        else if( bucket < DUE )
+        {
+            occupied[bucket >> 6] |= 1L << bucket;
+        }
+        heads[bucket] = timer;
+    }
+
+    private void unlink( CronTimer timer )
+    {
+        int bucket = timer.bucket;
+        if( timer.previous != null )
+        {
+            timer.previous.next = timer.next;
+        }
+        else
+        {
+            heads[bucket] = timer.next;
+            if( timer.next == null && bucket < DUE )
+            {
+                occupied[bucket >> 6] &= ~( 1L << bucket );
+            }
+        }
+        if( timer.next != null )
+        {
+            timer.next.previous = timer.previous;
+        }
+        timer.bucket = NONE;
+        timer.previous = null;
+        timer.next = null;
+    }
+
+    private CronTimer detach( int bucket )
+    {
+        CronTimer head = heads[bucket];
+        heads[bucket] = null;
+        if( bucket < DUE )
+        {
+            occupied[bucket >> 6] &= ~( 1L << bucket );
+        }
+        return head;
+    }
+
+    private void cascade( int bucket )
+    {
+        CronTimer timer = detach( bucket );
+        while( timer != null )
+        {
+            CronTimer next = timer.next;
+            link( timer, bucketOf( timer.deadline ) );
+            timer = next;
+        }
+    }
+
+    private void expire( int bucket, Consumer<? super CronTimer> expired )
+    {
+        CronTimer timer = detach( bucket );
+        while( timer != null )
+        {
+            CronTimer next = timer.next;
+            timer.bucket = NONE;
+            timer.previous = null;
+            timer.next = null;
+            size--;
+            expired.accept( timer );
+            timer = next;
+        }
+    }
+}
@@ -0,0 +1,212 @@
+/*
+ * Copyright (c) 2014, Paul Merlin. All Rights Reserved.
+ *
+ * Licensed  under the  Apache License,  Version 2.0  (the "License");
+ * you may not use  this file  except in  compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed  under the  License is distributed on an "AS IS" BASIS,
+ * WITHOUT  WARRANTIES OR CONDITIONS  OF ANY KIND, either  express  or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codeartisans.sked.cron;
+
+import java.util.Arrays;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Timer shared by all the jobs of a CronScheduler whose schedules have the same runs.
+ *
+ * Only one timer is armed and one next run is computed per distinct schedule, whatever the count of jobs, each fire is
+ * fanned out to all the jobs. Triggers are equal when their schedules have the same compiled atoms, whatever their
+ * expressions, eg. {@literal @daily} and {@literal 0 0 0 * * *}.
+ *
+ * Only the dispatcher thread of the scheduler may use triggers, except for equality.
+ */
+/* package */ final class CronTrigger
+    extends CronTimer
+{
+    /**
+     * Fires with more jobs than this on a ForkJoinPool are split by the pool workers.
+     */
+    private static final int FAN_OUT_THRESHOLD = 64;
+
+    private final CronSchedule schedule;
+    private final int hashCode;
+    private CronJob[] jobs = new CronJob[ 4 ];
+    private int size;
+
+    /* package */ CronTrigger( CronSchedule schedule )
+    {
+        this.schedule = schedule;
+        this.hashCode = schedule.runsHashCode();
+    }
+
+    /* package */ CronSchedule schedule()
+    {
+        return schedule;
+    }
+
+    /**
+     * @return Count of jobs of this trigger
+     */
+    /* package */ int size()
+    {
+        return size;
+    }
+
+    /* package */ void add( CronJob job )
+    {
+        if( size == jobs.length )
+        {
+            jobs = Arrays.copyOf( jobs, size * 2 );
+        }
+        job.trigger = this;
+        job.index = size;
+        jobs[size++] = job;
+    }
+
+    /* package */ void remove( CronJob job )
+    {
+        int index = job.index;
+        CronJob last = jobs[--size];
+        jobs[index] = last;
+        last.index = index;
+        jobs[size] = null;
+        job.trigger = null;
+        job.index = -1;
+    }
+
+    /**
+     * Remove all the jobs of this trigger, marking them exhausted.
+     */
+    /* package */ void exhaust()
+    {
+        for( int idx = 0; idx < size; idx++ )
+        {
+            CronJob job = jobs[idx];
+            job.trigger = null;
+            job.index = -1;
+            job.exhausted = true;
+            jobs[idx] = null;
+        }
+        size = 0;
+    }
+
+    /**
+     * Hand the runs of all the jobs of this trigger that are not cancelled to the executor.
+     *
+     * On a ForkJoinPool, the runs of a large fire are handed as a single task over a snapshot of the jobs. It is split
+     * by the pool workers, each pushing runs to its own queue, from where idle workers steal them.
+     *
+     * @param executor  Executor
+     */
+    /* package */ void fire( Executor executor )
+    {
+        if( size > FAN_OUT_THRESHOLD && executor instanceof ForkJoinPool )
+        {
+            FanOut fanOut = new FanOut( Arrays.copyOf( jobs, size ), 0, size );
+            try
+            {
+                ( (ForkJoinPool) executor ).execute( fanOut );
+            }
+            catch( RuntimeException ex )
+            {
+                Logger.warn( "CronScheduler could not run " + this, ex );
+            }
+            return;
+        }
+        for( int idx = 0; idx < size; idx++ )
+        {
+            CronJob job = jobs[idx];
+            if( !job.isCancelled() )
+            {
+                execute( executor, job );
+            }
+        }
+    }
+
+    private static void execute( Executor executor, CronJob job )
+    {
+        try
+        {
+            executor.execute( job.runnable() );
+        }
+        catch( RuntimeException ex )
+        {
+            // Eg. rejected by a saturated or shut down executor, the run is lost
+            Logger.warn( "CronScheduler could not run " + job, ex );
+        }
+    }
+
+    private static final class FanOut
+        extends RecursiveAction
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final CronJob[] jobs;
+        private final int start;
+        private final int end;
+
+        private FanOut( CronJob[] jobs, int start, int end )
+        {
+            this.jobs = jobs;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected void compute()
+        {
+            if( end - start > FAN_OUT_THRESHOLD )
+            {
+                int middle = ( start + end ) >>> 1;
+                invokeAll( new FanOut( jobs, start, middle ), new FanOut( jobs, middle, end ) );
+                return;
+            }
+            ForkJoinPool pool = getPool();
+            for( int idx = start; idx < end; idx++ )
+            {
+                if( !jobs[idx].isCancelled() )
+                {
+                    execute( pool, jobs[idx] );
+                }
+            }
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        return "CronTrigger[" + schedule + "]";
+    }
+
+    @Override
+    public boolean equals( Object obj )
+    {
+        if( this == obj )
+        {
+            return true;
+        }
+        if( !( obj instanceof CronTrigger ) )
+        {
+            return false;
+        }
+        CronTrigger other = (CronTrigger) obj;
+        return hashCode == other.hashCode && schedule.hasSameRuns( other.schedule );
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return hashCode;
+    }
+}
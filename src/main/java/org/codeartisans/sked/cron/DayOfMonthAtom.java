@@ -20,9 +20,9 @@ package org.codeartisans.sked.cron;
 /* package */ final class DayOfMonthAtom
     extends AbstractCronAtom
 {
-    /* package */ DayOfMonthAtom( String atom )
+    /* package */ DayOfMonthAtom( CronAtomSource source )
     {
-        super( atom );
+        super( source );
     }
 
     @Override
@@ -20,9 +20,9 @@ package org.codeartisans.sked.cron;
 /* package */ final class DayOfWeekAtom
     extends AbstractCronAtom
 {
-    /* package */ DayOfWeekAtom( String atom )
+    /* package */ DayOfWeekAtom( CronAtomSource source )
     {
-        super( atom );
+        super( source );
     }
 
     @Override
@@ -35,13 +35,31 @@ package org.codeartisans.sked.cron;
     protected void afterParseAtom()
     {
         // O and 7 are the same day of week, prefer 7 as it is the one used by Date
-        if( possibleValues.contains( 0 ) )
+        if( isPossibleValue( 0 ) )
         {
-            possibleValues.remove( 0 );
-            possibleValues.add( 7 );
+            removePossibleValue( 0 );
+            addPossibleValue( 7 );
         }
     }
 
+    @Override
+    protected int anyValuesCount()
+    {
+        // 0 is held as 7
+        return 7;
+    }
+
+    private static final String[] NAMES = new String[]
+    {
+        "mon", "tue", "wed", "thu", "fri", "sat", "sun"
+    };
+
+    @Override
+    protected String[] names()
+    {
+        return NAMES;
+    }
+
     @Override
     protected boolean canBeOmmited()
     {
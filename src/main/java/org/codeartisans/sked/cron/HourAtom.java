@@ -20,9 +20,9 @@ package org.codeartisans.sked.cron;
 /* package */ final class HourAtom
     extends AbstractCronAtom
 {
-    /* package */ HourAtom( String atom )
+    /* package */ HourAtom( CronAtomSource source )
     {
-        super( atom );
+        super( source );
     }
 
     @Override
@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) 2014, Paul Merlin. All Rights Reserved.
+ *
+ * Licensed  under the  Apache License,  Version 2.0  (the "License");
+ * you may not use  this file  except in  compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed  under the  License is distributed on an "AS IS" BASIS,
+ * WITHOUT  WARRANTIES OR CONDITIONS  OF ANY KIND, either  express  or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codeartisans.sked.cron;
+
+import java.time.Instant;
+import java.time.zone.ZoneOffsetTransition;
+import java.time.zone.ZoneRules;
+
+/**
+ * Resolves local epoch seconds to epoch seconds for many successive local times.
+ *
+ * Keeps the current offset along with the window of local times it applies to without ambiguity, ie. between the end
+ * of the previous transition gap or overlap and the start of the next one. Resolving a local time inside the window is
+ * a subtraction, zone rules are only consulted again when leaving it. Resolution is the same as
+ * {@link CivilTime#toEpochSecond(long, ZoneRules)}.
+ */
+/* package */ final class LocalTimeResolver
+{
+    private final ZoneRules rules;
+    private long windowStart = 0;
+    private long windowEnd = 0;
+    private int offset;
+    private boolean shifted;
+
+    /* package */ LocalTimeResolver( ZoneRules rules )
+    {
+        this.rules = rules;
+        if( rules.isFixedOffset() )
+        {
+            windowStart = Long.MIN_VALUE;
+            windowEnd = Long.MAX_VALUE;
+            offset = rules.getOffset( Instant.EPOCH ).getTotalSeconds();
+        }
+    }
+
+    /**
+     * @return true if the last resolved local time was in a gap and has been shifted forward
+     */
+    /* package */ boolean isShifted()
+    {
+        return shifted;
+    }
+
+    /* package */ long toEpochSecond( long localEpochSecond )
+    {
+        if( localEpochSecond >= windowStart && localEpochSecond < windowEnd )
+        {
+            shifted = false;
+            return localEpochSecond - offset;
+        }
+        long epochSecond = CivilTime.toEpochSecond( localEpochSecond, rules );
+        Instant instant = Instant.ofEpochSecond( epochSecond );
+        offset = rules.getOffset( instant ).getTotalSeconds();
+        shifted = localEpochSecond - epochSecond != offset;
+        ZoneOffsetTransition previous = rules.previousTransition( instant.plusSeconds( 1 ) );
+        ZoneOffsetTransition next = rules.nextTransition( instant );
+        windowStart = previous == null
+                      ? Long.MIN_VALUE
+                      : previous.toEpochSecond() + Math.max( previous.getOffsetBefore().getTotalSeconds(),
+                                                             previous.getOffsetAfter().getTotalSeconds() );
+        windowEnd = next == null
+                    ? Long.MAX_VALUE
+                    : next.toEpochSecond() + Math.min( next.getOffsetBefore().getTotalSeconds(),
+                                                       next.getOffsetAfter().getTotalSeconds() );
+        return epochSecond;
+    }
+}
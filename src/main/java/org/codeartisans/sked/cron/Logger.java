@@ -17,61 +17,110 @@
  */
 package org.codeartisans.sked.cron;
 
-import java.lang.reflect.Method;
-import java.util.Arrays;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 
+/**
+ * Optional SLF4J logging.
+ *
+ * SLF4J methods are resolved once as MethodHandles bound to the logger. Call sites must be guarded by
+ * {@link #isTraceEnabled()} so that disabled tracing costs neither reflection nor varargs allocation. Without SLF4J,
+ * traces are dropped while warnings go to the platform logger, so that dropped work is never silent.
+ */
 @SuppressWarnings(
      {
         "CallToThreadDumpStack", "BroadCatchBlock", "TooBroadCatch", "UseSpecificCatch"
     } )
 /* package */ final class Logger
 {
-    private static final Object LOGGER;
-    private static final Method TRACE_METHOD;
+    private static final MethodHandle IS_TRACE_ENABLED;
+    private static final MethodHandle TRACE;
+    private static final MethodHandle WARN;
 
     static
     {
-        Object logger;
-        Method traceMethod;
+        MethodHandle isTraceEnabled;
+        MethodHandle trace;
+        MethodHandle warn;
         try
         {
-            logger = Class.forName( "org.slf4j.LoggerFactory" ).
-                getMethod( "getLogger", new Class[]
-                    {
-                        String.class
-                } ).
+            Class<?> loggerClass = Class.forName( "org.slf4j.Logger" );
+            Object logger = Class.forName( "org.slf4j.LoggerFactory" ).
+                getMethod( "getLogger", String.class ).
                 invoke( null, "org.codeartisans.sked.cron" );
-            traceMethod = Class.forName( "org.slf4j.Logger" ).
-                getMethod( "trace", new Class[]
-                    {
-                        String.class,
-                        Object[].class
-                } );
+            MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+            isTraceEnabled = lookup.findVirtual( loggerClass, "isTraceEnabled",
+                                                 MethodType.methodType( boolean.class ) ).
+                bindTo( logger );
+            trace = lookup.findVirtual( loggerClass, "trace",
+                                        MethodType.methodType( void.class, String.class, Object[].class ) ).
+                bindTo( logger );
+            warn = lookup.findVirtual( loggerClass, "warn",
+                                       MethodType.methodType( void.class, String.class, Throwable.class ) ).
+                bindTo( logger );
         }
         catch( Exception ex )
         {
-            logger = null;
-            traceMethod = null;
+            isTraceEnabled = null;
+            trace = null;
+            warn = null;
+        }
+        IS_TRACE_ENABLED = isTraceEnabled;
+        TRACE = trace;
+        WARN = warn;
+    }
+
+    /* package */ static boolean isTraceEnabled()
+    {
+        if( IS_TRACE_ENABLED == null )
+        {
+            return false;
+        }
+        try
+        {
+            return (boolean) IS_TRACE_ENABLED.invokeExact();
+        }
+        catch( Throwable ex )
+        {
+            ex.printStackTrace();
+            return false;
         }
-        LOGGER = logger;
-        TRACE_METHOD = traceMethod;
     }
 
     /* package */ static void trace( String message, Object... objects )
     {
-        if( LOGGER != null )
+        if( TRACE != null )
         {
             try
             {
-                TRACE_METHOD.invoke( LOGGER, new Object[]
-                {
-                    message, objects
-                } );
+                TRACE.invokeExact( message, objects );
             }
-            catch( Exception ex )
+            catch( Throwable ex )
             {
                 ex.printStackTrace();
             }
         }
     }
+
+    /* package */ static void warn( String message, Throwable thrown )
+    {
+        if( WARN == null )
+        {
+            System.getLogger( "org.codeartisans.sked.cron" ).log( System.Logger.Level.WARNING, message, thrown );
+            return;
+        }
+        try
+        {
+            WARN.invokeExact( message, thrown );
+        }
+        catch( Throwable ex )
+        {
+            ex.printStackTrace();
+        }
+    }
+
+    private Logger()
+    {
+    }
 }
@@ -20,9 +20,9 @@ package org.codeartisans.sked.cron;
 /* package */ final class MinuteAtom
     extends AbstractCronAtom
 {
-    /* package */ MinuteAtom( String atom )
+    /* package */ MinuteAtom( CronAtomSource source )
     {
-        super( atom );
+        super( source );
     }
 
     @Override
@@ -20,9 +20,9 @@ package org.codeartisans.sked.cron;
 /* package */ final class MonthAtom
     extends AbstractCronAtom
 {
-    /* package */ MonthAtom( String atom )
+    /* package */ MonthAtom( CronAtomSource source )
     {
-        super( atom );
+        super( source );
     }
 
     @Override
@@ -36,4 +36,15 @@ package org.codeartisans.sked.cron;
     {
         return 12;
     }
+
+    private static final String[] NAMES = new String[]
+    {
+        "jan", "feb", "mar", "apr", "may", "jun", "jul", "aug", "sep", "oct", "nov", "dec"
+    };
+
+    @Override
+    protected String[] names()
+    {
+        return NAMES;
+    }
 }
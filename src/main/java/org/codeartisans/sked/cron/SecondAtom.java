@@ -20,9 +20,9 @@ package org.codeartisans.sked.cron;
 /* package */ final class SecondAtom
     extends AbstractCronAtom
 {
-    /* package */ SecondAtom( String atom )
+    /* package */ SecondAtom( CronAtomSource source )
     {
-        super( atom );
+        super( source );
     }
 
     @Override
@@ -30,15 +30,4 @@ package org.codeartisans.sked.cron;
     {
         return 59;
     }
-
-    @Override
-    public int nextValue( int start )
-    {
-        // Special here because second is the base atom
-        if( possibleValues.size() == 1 && possibleValues.first().equals( start ) )
-        {
-            return -1;
-        }
-        return super.nextValue( start );
-    }
 }
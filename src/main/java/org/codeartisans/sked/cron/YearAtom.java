@@ -20,9 +20,9 @@ package org.codeartisans.sked.cron;
 /* package */ final class YearAtom
     extends AbstractCronAtom
 {
-    /* package */ YearAtom( String atom )
+    /* package */ YearAtom( CronAtomSource source )
     {
-        super( atom );
+        super( source );
     }
 
     @Override
@@ -0,0 +1,67 @@
+/*
+ * Copyright (c) 2014, Paul Merlin. All Rights Reserved.
+ *
+ * Licensed  under the  Apache License,  Version 2.0  (the "License");
+ * you may not use  this file  except in  compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed  under the  License is distributed on an "AS IS" BASIS,
+ * WITHOUT  WARRANTIES OR CONDITIONS  OF ANY KIND, either  express  or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codeartisans.sked.cron;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class CachingCronScheduleFactoryTest
+{
+    @Test
+    public void testInterning()
+    {
+        CachingCronScheduleFactory factory = new CachingCronScheduleFactory( 16 );
+
+        CronSchedule daily = factory.newInstance( "@daily" );
+        assertSame( daily, factory.newInstance( "@daily" ) );
+        assertSame( daily, factory.newInstance( "0 0 0 * * *" ) );
+        assertSame( daily, factory.newInstance( "0 0 0 * * * *" ) );
+        assertSame( daily, factory.newInstance( "@midnight" ) );
+        assertNotSame( daily, factory.newInstance( "@hourly" ) );
+
+        assertEquals( 2, factory.hitCount() );
+        assertEquals( 4, factory.missCount() );
+        assertEquals( 0, factory.evictionCount() );
+    }
+
+    @Test
+    public void testEviction()
+    {
+        CachingCronScheduleFactory factory = new CachingCronScheduleFactory( 4 );
+        for( int second = 0; second < 60; second++ )
+        {
+            factory.newInstance( second + " * * * * * *" );
+        }
+        assertTrue( factory.size() <= 4 );
+        assertEquals( 60 - factory.size(), factory.evictionCount() );
+        assertEquals( 60, factory.missCount() );
+    }
+
+    @Test
+    public void testOneShotSchedulesAreNotCached()
+    {
+        CachingCronScheduleFactory factory = new CachingCronScheduleFactory( 4 );
+        factory.newInstance( 1292957700053L );
+        assertEquals( 0, factory.size() );
+        assertEquals( 0, factory.missCount() );
+    }
+}
@@ -18,12 +18,23 @@
 package org.codeartisans.sked.cron;
 
 import java.io.IOException;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.zone.ZoneOffsetTransition;
+import java.util.PrimitiveIterator;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
 import org.codeartisans.junit.Assert.PostSerializationAssertions;
 import org.joda.time.DateTime;
 import org.junit.Test;
+import org.openjdk.jol.info.GraphLayout;
 
 import static org.codeartisans.junit.Assert.assertSerializable;
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
@@ -41,10 +52,155 @@ public class CronScheduleTest
             public void postSerializationAssertions( CronSchedule copy )
             {
                 assertEquals( tested.toString(), copy.toString() );
+                assertEquals( tested.nextFire( 0 ), copy.nextFire( 0 ) );
             }
         } );
     }
 
+    @Test
+    public void testBinaryForm()
+    {
+        long start = Instant.parse( "2014-03-10T10:15:30.250Z" ).toEpochMilli();
+        for( String[] expressions : new String[][]
+        {
+            {
+                "@minutely", "0 * * * * * *"
+            },
+            {
+                "0 0 9 ? * MON-FRI", "0 0 9 ? * 1-5 *"
+            },
+            {
+                "30 15 2 1 * ?", "30 15 2 1 * ? *"
+            },
+            {
+                "* 0-30/10 9-17 * * *", "* 0-30/10 9-17 * * * *"
+            },
+            {
+                "0 0 0 29 2 ? 2016-2030/2", "0 0 0 29 2 ? 2016-2030/2"
+            },
+            {
+                "0 */5 0,10,20 * JAN,FEB,MAR,JUL ?", "0 0-55/5 0-20/10 * 1-3,7 ? *"
+            }
+        } )
+        {
+            CronSchedule schedule = new CronSchedule( expressions[0] );
+            byte[] bytes = schedule.toBytes();
+            assertEquals( expressions[0], 2 + 43, bytes.length );
+            CronSchedule restored = CronSchedule.fromBytes( bytes );
+            assertEquals( expressions[1], restored.toString() );
+            assertEquals( schedule.nextFire( start, ZoneOffset.UTC ), restored.nextFire( start, ZoneOffset.UTC ) );
+            assertArrayEquals( bytes, restored.toBytes() );
+            assertArrayEquals( bytes, new CronSchedule( restored.toString() ).toBytes() );
+        }
+        byte[] bytes = new CronSchedule( "0 0 9 ? * MON-FRI" ).toBytes();
+        byte[] truncated = new byte[ bytes.length - 1 ];
+        System.arraycopy( bytes, 0, truncated, 0, truncated.length );
+        assertInvalidBytes( truncated );
+        byte[] version = bytes.clone();
+        version[0] = 42;
+        assertInvalidBytes( version );
+        byte[] outOfRange = bytes.clone();
+        outOfRange[2 + 7] = (byte) 0xF0; // Seconds 60 to 63
+        assertInvalidBytes( outOfRange );
+        byte[] ommited = bytes.clone();
+        ommited[1] = 1; // Ommited seconds
+        assertInvalidBytes( ommited );
+        byte[] ommitedWithValues = bytes.clone();
+        ommitedWithValues[1] = 1 << 5; // Ommited days of week
+        assertInvalidBytes( ommitedWithValues );
+        // The expression describes the decoded atoms, whatever they are
+        byte[] edited = bytes.clone();
+        edited[2 + 8] |= 2; // Minute 1
+        CronSchedule restored = CronSchedule.fromBytes( edited );
+        assertEquals( "0 0,1 9 ? * 1-5 *", restored.toString() );
+        assertArrayEquals( edited, new CronSchedule( restored.toString() ).toBytes() );
+    }
+
+    @Test
+    public void testBuilder()
+    {
+        long start = Instant.parse( "2014-03-10T10:15:30.250Z" ).toEpochMilli();
+        CronSchedule built = new CronScheduleBuilder()
+            .seconds( 0 )
+            .minutesBetween( 0, 30, 10 ).minutes( 45 )
+            .hoursBetween( 9, 17 )
+            .daysOfWeekBetween( 1, 5 )
+            .build();
+        CronSchedule parsed = new CronSchedule( "0 0-30/10,45 9-17 * * 1-5 *" );
+        assertEquals( parsed.toString(), built.toString() );
+        assertArrayEquals( parsed.toBytes(), built.toBytes() );
+        assertEquals( parsed.nextFire( start, ZoneOffset.UTC ), built.nextFire( start, ZoneOffset.UTC ) );
+        assertEquals( "* * * * * * *", new CronScheduleBuilder().build().toString() );
+        CronSchedule single = new CronScheduleBuilder().secondsBetween( 5, 5, 10 ).build();
+        assertEquals( "5 * * * * * *", single.toString() );
+        assertArrayEquals( new CronSchedule( single.toString() ).toBytes(), single.toBytes() );
+        try
+        {
+            new CronScheduleBuilder().hours( 24 ).build();
+            fail( "Out of range hour has been accepted" );
+        }
+        catch( IllegalArgumentException expected )
+        {
+        }
+        try
+        {
+            new CronScheduleBuilder().seconds().minutes( 0 ).build();
+            fail( "Empty seconds have been accepted" );
+        }
+        catch( IllegalArgumentException expected )
+        {
+        }
+    }
+
+    /**
+     * Zones and days of overlaps, at various offsets, St Johns repeating local times across midnight.
+     */
+    private static final String[][] OVERLAPS = new String[][]
+    {
+        {
+            "Europe/Paris", "2013-10-27T00:00:00Z"
+        },
+        {
+            "America/St_Johns", "2011-11-06T00:00:00Z"
+        },
+        {
+            "Pacific/Apia", "2012-03-31T00:00:00Z"
+        }
+    };
+
+    /**
+     * @return Start of the first occurence of the local times repeated by the first overlap after the given day
+     */
+    private static long overlapFirstOccurence( ZoneId zone, String day )
+    {
+        ZoneOffsetTransition overlap = zone.getRules().nextTransition( Instant.parse( day ) );
+        assertTrue( overlap.isOverlap() );
+        return ( overlap.toEpochSecond() + overlap.getDuration().getSeconds() ) * 1000;
+    }
+
+    /**
+     * @return Runs of the given schedule between the given times, found by testing each second
+     */
+    private static long[] matchingRuns( CronSchedule schedule, long from, long to, ZoneId zone )
+    {
+        return LongStream.range( Math.floorDiv( from + 999, 1000 ), Math.floorDiv( to + 999, 1000 ) )
+            .map( second -> second * 1000 )
+            .filter( time -> schedule.matches( time, zone ) )
+            .toArray();
+    }
+
+    private static void assertInvalidBytes( byte[] bytes )
+    {
+        try
+        {
+            CronSchedule.fromBytes( bytes );
+            fail( "Invalid binary cron schedule has been accepted" );
+        }
+        catch( IllegalArgumentException expected )
+        {
+        }
+    }
+
     @Test
     public void testWrongExpressions()
     {
@@ -58,6 +214,14 @@ public class CronScheduleTest
         testWrongExpressionsEffective( "1 2 3 4 5 6 7 8", "Cron expression must be composed of 6 or 7 atoms" );
         testWrongExpressionsEffective( "A * * * * *", "Cron expression contains unauthorized characters" );
         testWrongExpressionsEffective( "1 ? * * * *", "Cron expression allow ? only on dof and dow" );
+        testWrongExpressionsEffective( "60 * * * * *", "Cron expression values must be in their field range" );
+        testWrongExpressionsEffective( "0 0 0 32 * *", "Cron expression values must be in their field range" );
+        testWrongExpressionsEffective( "*/0 * * * * *", "Cron expression steps must be strictly positive" );
+        testWrongExpressionsEffective( "0 5-1 * * * *", "Cron expression ranges must be ordered" );
+        testWrongExpressionsEffective( "0 1,,2 * * * *", "Cron expression lists cannot have empty items" );
+        testWrongExpressionsEffective( "0 0 0 1 * MONDAY", "Cron expression names must be known" );
+        testWrongExpressionsEffective( "0 0 0 L * *", "Cron expression L special char is not supported" );
+        testWrongExpressionsEffective( "@often", "Cron expression special strings must be known" );
     }
 
     private void testWrongExpressionsEffective( String cronExpression, String message )
@@ -119,6 +283,37 @@ public class CronScheduleTest
                       yearly.firstRunAfter( start.getMillis() ) );
     }
 
+    @Test
+    public void testErrorPositions()
+    {
+        try
+        {
+            new CronSchedule( "0 0 12 1 FOO *" );
+            fail( "Unknown month name" );
+        }
+        catch( IllegalArgumentException ex )
+        {
+            assertTrue( ex.getMessage(), ex.getMessage().contains( "position 9" ) );
+        }
+        try
+        {
+            new CronSchedule( "0 0 25 * * *" );
+            fail( "Hour out of range" );
+        }
+        catch( IllegalArgumentException ex )
+        {
+            assertTrue( ex.getMessage(), ex.getMessage().contains( "position 4" ) );
+        }
+    }
+
+    @Test
+    public void testNames()
+    {
+        assertEquals( "0 0 23 ? * 1-5 *", new CronSchedule( "0 0 23 ? * MON-fRi" ).toString() );
+        assertEquals( "0 0 0 1 2,12 ? 2030", new CronSchedule( "0 0 0 1 feb,DEC ? 2030" ).toString() );
+        assertEquals( "0 0 0 1 1 * *", new CronSchedule( "0\t0  0 1 1 *" ).toString() );
+    }
+
     @Test
     public void testGoodExpressions()
     {
@@ -140,4 +335,435 @@ public class CronScheduleTest
                       nextRun );
     }
 
+    @Test
+    public void testBoxedAndPrimitiveRuns()
+    {
+        long start = new DateTime().getMillis();
+
+        CronSchedule minutely = new CronSchedule( "@minutely" );
+        assertEquals( minutely.firstRunAfter( Long.valueOf( start ) ), Long.valueOf( minutely.nextFire( start ) ) );
+
+        CronSchedule past = new CronSchedule( "0 0 12 1 3 ? 2003" );
+        assertNull( past.firstRunAfter( Long.valueOf( start ) ) );
+        assertEquals( CronSchedule.NEVER, past.nextFire( start ) );
+    }
+
+    @Test
+    public void testRunsBetween()
+    {
+        ZoneId utc = ZoneOffset.UTC;
+        long day = Instant.parse( "2014-03-10T00:00:00Z" ).toEpochMilli();
+        assertEquals( 1440, new CronSchedule( "@minutely" ).runsBetween( day, day + 86400000L, utc ).count() );
+        // Start is inclusive
+        assertEquals( day, new CronSchedule( "@daily" ).runsBetween( day, day + 1, utc ).findFirst().getAsLong() );
+
+        ZoneId paris = ZoneId.of( "Europe/Paris" );
+        long from = Instant.parse( "2014-03-29T00:00:00Z" ).toEpochMilli();
+        long to = Instant.parse( "2014-04-02T00:00:00Z" ).toEpochMilli();
+        for( String expression : new String[]
+        {
+            "*/20 * * * * *", "0 */7 1-3 * * *", "0 30 2 * * ?", "0 0,30 2,4 * * ?", "15 0 0 30,31 * ?",
+            "0 0 0 29 2 ?"
+        } )
+        {
+            CronSchedule schedule = new CronSchedule( expression );
+            long[] runs = schedule.runsBetween( from, to, paris ).toArray();
+            int index = 0;
+            for( long run = schedule.nextFire( from - 1, paris ); run < to; run = schedule.nextFire( run, paris ) )
+            {
+                assertEquals( expression, run, runs[index++] );
+            }
+            assertEquals( expression, index, runs.length );
+        }
+    }
+
+    @Test
+    public void testParallelRunsBetween()
+    {
+        ZoneId paris = ZoneId.of( "Europe/Paris" );
+        long from = Instant.parse( "2013-06-15T10:20:30Z" ).toEpochMilli();
+        long to = Instant.parse( "2017-02-03T04:05:06Z" ).toEpochMilli();
+        for( String expression : new String[]
+        {
+            "0 */5 * * * *", "0 30 2 * * ?", "0 0 0 29 2 ?", "0 0 12 ? * MON-FRI"
+        } )
+        {
+            CronSchedule schedule = new CronSchedule( expression );
+            assertArrayEquals( expression,
+                               schedule.runsBetween( from, to, paris ).toArray(),
+                               schedule.runsBetween( from, to, paris ).parallel().toArray() );
+        }
+
+        // Zones with transitions at midnight, over windows split at midnights
+        for( String[] window : new String[][]
+        {
+            {
+                "America/Havana", "2015-10-31T12:00:00Z", "2015-11-01T12:00:00Z"
+            },
+            {
+                "America/Havana", "2015-03-01T00:00:00Z", "2015-03-15T00:00:00Z"
+            },
+            {
+                "America/Sao_Paulo", "2015-10-14T00:00:00Z", "2015-10-24T00:00:00Z"
+            },
+            {
+                "America/Sao_Paulo", "2016-02-15T00:00:00Z", "2016-02-25T00:00:00Z"
+            }
+        } )
+        {
+            ZoneId zone = ZoneId.of( window[0] );
+            long start = Instant.parse( window[1] ).toEpochMilli();
+            long end = Instant.parse( window[2] ).toEpochMilli();
+            for( String expression : new String[]
+            {
+                "0 15,45 * * * *", "0 0 0 * * *", "0 */20 0 * * *"
+            } )
+            {
+                CronSchedule schedule = new CronSchedule( expression );
+                assertArrayEquals( window[0] + " " + expression,
+                                   schedule.runsBetween( start, end, zone ).toArray(),
+                                   schedule.runsBetween( start, end, zone ).parallel().toArray() );
+            }
+        }
+    }
+
+    @Test
+    public void testLastRunBefore()
+    {
+        // Windows spanning gaps and overlaps, of one hour in Paris and of half an hour in Lord Howe
+        for( String[] window : new String[][]
+        {
+            {
+                "Europe/Paris", "2013-10-20T00:00:00Z", "2014-04-05T00:00:00Z"
+            },
+            {
+                "Australia/Lord_Howe", "2015-03-25T00:00:00Z", "2015-04-15T00:00:00Z"
+            },
+            {
+                "Australia/Lord_Howe", "2015-09-25T00:00:00Z", "2015-10-15T00:00:00Z"
+            }
+        } )
+        {
+            ZoneId zone = ZoneId.of( window[0] );
+            long from = Instant.parse( window[1] ).toEpochMilli();
+            long to = Instant.parse( window[2] ).toEpochMilli();
+            for( String expression : new String[]
+            {
+                "*/20 * * * * *", "0 */7 1-3 * * *", "0 30 2 * * ?", "15 0 0 30,31 * ?", "0 0 12 ? * MON-FRI",
+                "0 0 0 29 2 ?", "0 0 0 1 1 ? 2014", "* 0-30/10 9-17 * * MON-FRI", "0 0,20,40 2 * * *",
+                "0 10,31,50 2,3 * * *"
+            } )
+            {
+                String message = window[0] + " " + expression;
+                CronSchedule schedule = new CronSchedule( expression );
+                long[] runs = schedule.runsBetween( from, to, zone ).toArray();
+                PrimitiveIterator.OfLong descending = schedule.descendingRunsBetween( from, to, zone );
+                for( int index = runs.length - 1; index >= 0; index-- )
+                {
+                    assertEquals( message, runs[index], descending.nextLong() );
+                    assertEquals( message, runs[index], schedule.lastRunBefore( runs[index] + 1, zone ) );
+                }
+                assertFalse( message, descending.hasNext() );
+            }
+        }
+        // Windows starting or ending in the first occurence of the local times repeated by an overlap
+        for( String[] overlap : OVERLAPS )
+        {
+            ZoneId zone = ZoneId.of( overlap[0] );
+            long firstOccurence = overlapFirstOccurence( zone, overlap[1] );
+            for( String expression : new String[]
+            {
+                "0 15,45 * * * *", "0 */7 * * * *", "30 * * * * *"
+            } )
+            {
+                CronSchedule schedule = new CronSchedule( expression );
+                for( long bound = firstOccurence; bound < firstOccurence + 3600000L; bound += 600000L )
+                {
+                    for( long[] window : new long[][]
+                    {
+                        {
+                            bound, bound + 3600000L
+                        },
+                        {
+                            bound - 3600000L, bound
+                        }
+                    } )
+                    {
+                        String message = overlap[0] + " " + expression + " " + window[0] + " " + window[1];
+                        long[] runs = schedule.runsBetween( window[0], window[1], zone ).toArray();
+                        PrimitiveIterator.OfLong descending = schedule.descendingRunsBetween( window[0], window[1],
+                                                                                              zone );
+                        for( int index = runs.length - 1; index >= 0; index-- )
+                        {
+                            assertEquals( message, runs[index], descending.nextLong() );
+                        }
+                        assertFalse( message, descending.hasNext() );
+                    }
+                }
+            }
+        }
+        ZoneId paris = ZoneId.of( "Europe/Paris" );
+        CronSchedule quarters = new CronSchedule( "0 15,45 * * * *" );
+        long from = Instant.parse( "2013-10-27T00:40:00Z" ).toEpochMilli();
+        long to = Instant.parse( "2013-10-27T01:40:00Z" ).toEpochMilli();
+        PrimitiveIterator.OfLong descending = quarters.descendingRunsBetween( from, to, paris );
+        assertEquals( Instant.parse( "2013-10-27T01:15:00Z" ).toEpochMilli(), descending.nextLong() );
+        assertFalse( descending.hasNext() );
+
+        // Only the first local run of a gap is a run, shifted after the gap
+        assertEquals( Instant.parse( "2014-03-30T01:00:00Z" ).toEpochMilli(),
+                      new CronSchedule( "0 0,20,40 2 * * *" ).lastRunBefore(
+                          Instant.parse( "2014-03-30T02:00:00Z" ).toEpochMilli(), paris ) );
+
+        long start = Instant.parse( "2014-03-10T10:15:30.250Z" ).toEpochMilli();
+        CronSchedule past = new CronSchedule( "0 0 12 1 3 ? 2003" );
+        assertEquals( Instant.parse( "2003-03-01T12:00:00Z" ).toEpochMilli(), past.lastRunBefore( start, ZoneOffset.UTC ) );
+        assertEquals( CronSchedule.NEVER_BEFORE,
+                      past.lastRunBefore( past.lastRunBefore( start, ZoneOffset.UTC ), ZoneOffset.UTC ) );
+        assertEquals( CronSchedule.NEVER_BEFORE, new CronSchedule( "0 0 0 30 2 ?" ).lastRunBefore( start ) );
+        CronSchedule future = new CronSchedule( "0 0 0 1 1 * 2030" );
+        assertEquals( CronSchedule.NEVER_BEFORE, future.lastRunBefore( Long.MIN_VALUE, ZoneOffset.UTC ) );
+        assertFalse( future.descendingRunsBetween( Long.MIN_VALUE, Long.MIN_VALUE, ZoneOffset.UTC ).hasNext() );
+    }
+
+    @Test
+    public void testMatches()
+    {
+        // Days around gaps and overlaps, of one hour in Paris and of half an hour in Lord Howe
+        for( String[] window : new String[][]
+        {
+            {
+                "Europe/Paris", "2013-10-26T12:00:00Z"
+            },
+            {
+                "Europe/Paris", "2014-03-29T12:00:00Z"
+            },
+            {
+                "Australia/Lord_Howe", "2015-04-04T00:00:00Z"
+            },
+            {
+                "Australia/Lord_Howe", "2015-10-03T00:00:00Z"
+            }
+        } )
+        {
+            ZoneId zone = ZoneId.of( window[0] );
+            long from = Instant.parse( window[1] ).toEpochMilli();
+            long to = from + 2 * 86400000L;
+            for( String expression : new String[]
+            {
+                "*/20 * * * * *", "0 */7 1-3 * * *", "0 30 2 * * ?", "0 0 12 ? * MON-FRI", "0 0 0 1,30 * ?",
+                "0 0,20,40 2 * * *", "0 */7 * * * *"
+            } )
+            {
+                CronSchedule schedule = new CronSchedule( expression );
+                PrimitiveIterator.OfLong runs = schedule.runsBetween( from, to, zone ).iterator();
+                long nextRun = runs.hasNext() ? runs.nextLong() : CronSchedule.NEVER;
+                for( long time = from; time < to; time += 1000 )
+                {
+                    boolean isRun = time == nextRun;
+                    assertEquals( window[0] + " " + expression + " @" + time,
+                                  isRun, schedule.matches( time + 500, zone ) );
+                    if( isRun )
+                    {
+                        nextRun = runs.hasNext() ? runs.nextLong() : CronSchedule.NEVER;
+                    }
+                }
+            }
+        }
+        // Times matched around overlaps are the runs found by nextFire, whatever the occurence it starts from
+        for( String[] overlap : OVERLAPS )
+        {
+            ZoneId zone = ZoneId.of( overlap[0] );
+            long firstOccurence = overlapFirstOccurence( zone, overlap[1] );
+            for( String expression : new String[]
+            {
+                "0 15,45 * * * *", "0 */7 * * * *", "30 * * * * *"
+            } )
+            {
+                CronSchedule schedule = new CronSchedule( expression );
+                long previousRun = schedule.nextFire( firstOccurence - 3600000L, zone );
+                for( long time = firstOccurence - 3600000L; time < firstOccurence + 3 * 3600000L; time += 1000 )
+                {
+                    String message = overlap[0] + " " + expression + " @" + time;
+                    if( schedule.matches( time, zone ) )
+                    {
+                        assertEquals( message, time, schedule.nextFire( time - 1, zone ) );
+                    }
+                    long nextRun = schedule.nextFire( time, zone );
+                    assertTrue( message, nextRun >= previousRun );
+                    previousRun = nextRun;
+                }
+            }
+        }
+        ZoneId paris = ZoneId.of( "Europe/Paris" );
+        CronSchedule quarters = new CronSchedule( "0 15,45 * * * *" );
+        long secondOccurence = Instant.parse( "2013-10-27T01:15:00Z" ).toEpochMilli();
+        assertTrue( quarters.matches( secondOccurence, paris ) );
+        assertFalse( quarters.matches( Instant.parse( "2013-10-27T00:15:00Z" ).toEpochMilli(), paris ) );
+        long firstPass = Instant.parse( "2013-10-27T00:10:00Z" ).toEpochMilli();
+        long laterFirstPass = Instant.parse( "2013-10-27T00:40:00Z" ).toEpochMilli();
+        assertEquals( secondOccurence, quarters.nextFire( firstPass, paris ) );
+        assertEquals( secondOccurence, quarters.nextFire( laterFirstPass, paris ) );
+        assertEquals( secondOccurence, quarters.lastRunBefore( laterFirstPass + 3600000L, paris ) );
+
+        assertFalse( new CronSchedule( "0 0 0 30 2 ?" ).matches( 0 ) );
+    }
+
+    @Test
+    public void testCountRunsBetween()
+    {
+        ZoneId paris = ZoneId.of( "Europe/Paris" );
+        long[] bounds =
+        {
+            Instant.parse( "2013-06-15T10:20:30.250Z" ).toEpochMilli(),
+            Instant.parse( "2013-10-27T00:30:00Z" ).toEpochMilli(),
+            Instant.parse( "2014-03-30T01:15:00Z" ).toEpochMilli(),
+            Instant.parse( "2014-03-30T01:45:00Z" ).toEpochMilli(),
+            Instant.parse( "2016-02-03T04:05:06Z" ).toEpochMilli()
+        };
+        for( String expression : new String[]
+        {
+            "*/20 * * * * *", "0 */7 1-3 * * *", "0 0,30 2,4 * * ?", "0 0 12 ? * MON-FRI",
+            "0 0 0 29 2 ?", "0 0 0 1 1 ? 2014"
+        } )
+        {
+            CronSchedule schedule = new CronSchedule( expression );
+            for( int first = 0; first < bounds.length; first++ )
+            {
+                for( int last = first; last < bounds.length; last++ )
+                {
+                    assertEquals( expression + " " + bounds[first] + " " + bounds[last],
+                                  schedule.runsBetween( bounds[first], bounds[last], paris ).count(),
+                                  schedule.countRunsBetween( bounds[first], bounds[last], paris ) );
+                }
+            }
+        }
+        // Windows starting in the first occurence of the local times repeated by an overlap
+        for( String[] overlap : OVERLAPS )
+        {
+            ZoneId zone = ZoneId.of( overlap[0] );
+            long firstOccurence = overlapFirstOccurence( zone, overlap[1] );
+            for( String expression : new String[]
+            {
+                "0 15,45 * * * *", "0 */7 * * * *", "30 * * * * *"
+            } )
+            {
+                CronSchedule schedule = new CronSchedule( expression );
+                for( long from = firstOccurence; from < firstOccurence + 3600000L; from += 600000L )
+                {
+                    String message = overlap[0] + " " + expression + " " + from;
+                    long[] runs = schedule.runsBetween( from, from + 3600000L, zone ).toArray();
+                    assertArrayEquals( message, matchingRuns( schedule, from, from + 3600000L, zone ), runs );
+                    assertEquals( message, runs.length, schedule.countRunsBetween( from, from + 3600000L, zone ) );
+                }
+            }
+        }
+        CronSchedule quarters = new CronSchedule( "0 15,45 * * * *" );
+        long from = Instant.parse( "2013-10-27T00:40:00Z" ).toEpochMilli();
+        long to = Instant.parse( "2013-10-27T01:40:00Z" ).toEpochMilli();
+        assertArrayEquals( new long[]
+        {
+            Instant.parse( "2013-10-27T01:15:00Z" ).toEpochMilli()
+        }, quarters.runsBetween( from, to, paris ).toArray() );
+        assertEquals( 1, quarters.countRunsBetween( from, to, paris ) );
+
+        assertEquals( 0, new CronSchedule( "0 0 0 30 2 ?" ).countRunsBetween( 0, Long.MAX_VALUE ) );
+        assertEquals( 1, new CronSchedule( "0 0 0 1 1 ? 2014" ).countRunsBetween( Long.MIN_VALUE, Long.MAX_VALUE ) );
+        CronSchedule future = new CronSchedule( "0 0 0 1 1 * 2030" );
+        long end = Instant.parse( "2040-01-01T00:00:00Z" ).toEpochMilli();
+        assertEquals( 1, future.countRunsBetween( Long.MIN_VALUE, end, ZoneOffset.UTC ) );
+        assertEquals( 1, future.runsBetween( Long.MIN_VALUE, end, ZoneOffset.UTC ).count() );
+    }
+
+    @Test
+    public void testFixedPeriod()
+    {
+        long start = Instant.parse( "2014-12-31T23:52:07.250Z" ).toEpochMilli();
+        assertEquals( Instant.parse( "2014-12-31T23:52:15Z" ).toEpochMilli(),
+                      new CronSchedule( "*/15 * * * * *" ).nextFire( start, ZoneOffset.UTC ) );
+        assertEquals( Instant.parse( "2014-12-31T23:52:35Z" ).toEpochMilli(),
+                      new CronSchedule( "5,35 * * * * ?" ).nextFire( start, ZoneOffset.UTC ) );
+        assertEquals( Instant.parse( "2014-12-31T23:55:00Z" ).toEpochMilli(),
+                      new CronSchedule( "0 */5 * * * *" ).nextFire( start, ZoneOffset.UTC ) );
+        assertEquals( Instant.parse( "2015-01-01T00:00:00Z" ).toEpochMilli(),
+                      new CronSchedule( "@hourly" ).nextFire( start, ZoneOffset.UTC ) );
+        assertEquals( Instant.parse( "2015-01-01T01:30:00Z" ).toEpochMilli(),
+                      new CronSchedule( "0 30 1/3 * * *" ).nextFire( start, ZoneOffset.UTC ) );
+        // Fixed periods bounded by years
+        assertEquals( Instant.parse( "2016-01-01T00:00:00Z" ).toEpochMilli(),
+                      new CronSchedule( "0 */5 * * * * 2016" ).nextFire( start, ZoneOffset.UTC ) );
+        assertEquals( CronSchedule.NEVER, new CronSchedule( "0 */5 * * * * 2014" ).nextFire( start + 600000, ZoneOffset.UTC ) );
+    }
+
+    @Test
+    public void testNextFire()
+    {
+        ZoneId utc = ZoneOffset.UTC;
+        long start = Instant.parse( "2014-01-12T10:15:30.250Z" ).toEpochMilli();
+
+        assertEquals( Instant.parse( "2014-01-12T10:16:00Z" ).toEpochMilli(),
+                      new CronSchedule( "@minutely" ).nextFire( start, utc ) );
+        assertEquals( Instant.parse( "2014-01-12T10:15:45Z" ).toEpochMilli(),
+                      new CronSchedule( "*/15 * * * * *" ).nextFire( start, utc ) );
+        assertEquals( Instant.parse( "2014-06-13T00:00:00Z" ).toEpochMilli(),
+                      new CronSchedule( "0 0 0 13 * 5" ).nextFire( start, utc ) );
+        assertEquals( Instant.parse( "2016-02-29T00:00:00Z" ).toEpochMilli(),
+                      new CronSchedule( "0 0 0 29 2 *" ).nextFire( start, utc ) );
+        assertEquals( Instant.parse( "2020-03-01T12:00:00Z" ).toEpochMilli(),
+                      new CronSchedule( "0 0 12 1 3 ? 2020" ).nextFire( start, utc ) );
+        assertEquals( CronSchedule.NEVER,
+                      new CronSchedule( "0 0 12 1 3 ? 2003" ).nextFire( start, utc ) );
+
+        // Strictly after, even when starting on a run
+        long run = Instant.parse( "2014-01-12T10:15:45Z" ).toEpochMilli();
+        assertEquals( Instant.parse( "2014-01-12T10:16:00Z" ).toEpochMilli(),
+                      new CronSchedule( "*/15 * * * * *" ).nextFire( run, utc ) );
+
+        // Non existing local times are shifted forward by the length of the gap
+        ZoneId paris = ZoneId.of( "Europe/Paris" );
+        assertEquals( Instant.parse( "2014-03-30T01:30:00Z" ).toEpochMilli(),
+                      new CronSchedule( "0 30 2 * * *" ).nextFire( Instant.parse( "2014-03-29T12:00:00Z" ).toEpochMilli(), paris ) );
+    }
+
+    @Test
+    public void testSatisfiability()
+    {
+        assertTrue( new CronSchedule( "@minutely" ).isSatisfiable() );
+        assertTrue( new CronSchedule( "0 0 0 29 2 *" ).isSatisfiable() );
+        assertTrue( new CronSchedule( "0 0 0 29 2 1" ).isSatisfiable() );
+        assertTrue( new CronSchedule( "0 0 12 1 3 ? 2003" ).isSatisfiable() );
+
+        assertUnsatisfiable( "0 0 0 30 2 *" );
+        assertUnsatisfiable( "0 0 0 31 4,6,9,11 *" );
+        assertUnsatisfiable( "0 0 0 29 2 * 2097-2099" );
+        assertUnsatisfiable( "0 0 0 13 1 5 2014-2016" );
+    }
+
+    private static void assertUnsatisfiable( String cronExpression )
+    {
+        CronSchedule schedule = new CronSchedule( cronExpression );
+        assertFalse( cronExpression, schedule.isSatisfiable() );
+        assertEquals( cronExpression, CronSchedule.NEVER, schedule.nextFire( 0L, ZoneOffset.UTC ) );
+        assertNull( cronExpression, schedule.firstRunAfter( 0L ) );
+    }
+
+    @Test
+    public void testRetainedSizePerSchedule()
+    {
+        String[] expressions = new String[]
+        {
+            "@minutely", "@hourly", "@daily", "0 */5 * * * *", "0 0 9 ? * MON-FRI", "30 15 2 1 * ?"
+        };
+        int count = 100000;
+        CronSchedule[] schedules = new CronSchedule[ count ];
+        // Distinct expression strings, as if read from a crontab, parsed concurrently
+        IntStream.range( 0, count ).parallel().forEach(
+            idx -> schedules[idx] = new CronSchedule( new String( expressions[idx % expressions.length] ) ) );
+        long retained = GraphLayout.parseInstance( (Object) schedules ).totalSize()
+                        - GraphLayout.parseInstance( (Object) new CronSchedule[ count ] ).totalSize();
+        long perSchedule = retained / count;
+        // The schedule itself and its expression, atoms are shared
+        assertTrue( "Retained size per schedule is " + perSchedule + " bytes", perSchedule < 160 );
+    }
+
 }
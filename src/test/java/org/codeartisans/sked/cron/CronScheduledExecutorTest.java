@@ -0,0 +1,353 @@
+/*
+ * Copyright (c) 2014, Paul Merlin. All Rights Reserved.
+ *
+ * Licensed  under the  Apache License,  Version 2.0  (the "License");
+ * you may not use  this file  except in  compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed  under the  License is distributed on an "AS IS" BASIS,
+ * WITHOUT  WARRANTIES OR CONDITIONS  OF ANY KIND, either  express  or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codeartisans.sked.cron;
+
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class CronScheduledExecutorTest
+{
+    @Test
+    public void testOverlapPolicies()
+        throws InterruptedException
+    {
+        for( CronOverlapPolicy policy : CronOverlapPolicy.values() )
+        {
+            ManualExecutor executor = new ManualExecutor();
+            final CountDownLatch started = new CountDownLatch( 1 );
+            final CountDownLatch release = new CountDownLatch( 1 );
+            final AtomicInteger runs = new AtomicInteger();
+            final AtomicInteger running = new AtomicInteger();
+            final AtomicInteger maxRunning = new AtomicInteger();
+            ScheduledFuture<?> future = executor.cron().schedule( () ->
+                                                              {
+                                                                  maxRunning.accumulateAndGet(
+                                                                      running.incrementAndGet(), Math::max );
+                                                                  if( runs.incrementAndGet() == 1 )
+                                                                  {
+                                                                      started.countDown();
+                                                                      try
+                                                                      {
+                                                                          release.await();
+                                                                      }
+                                                                      catch( InterruptedException ex )
+                                                                      {
+                                                                          Thread.currentThread().interrupt();
+                                                                      }
+                                                                  }
+                                                                  running.decrementAndGet();
+                                                              }, new CronSchedule( "* * * * * *" ), policy );
+            // The first run is held on its own thread while the next two triggers fire
+            Thread first = new Thread( executor.next() );
+            first.start();
+            assertTrue( started.await( 5, TimeUnit.SECONDS ) );
+            executor.next().run();
+            executor.next().run();
+            release.countDown();
+            first.join( 5000 );
+            assertFalse( first.isAlive() );
+            switch( policy )
+            {
+                case SKIP:
+                    assertEquals( 1, runs.get() );
+                    assertEquals( 1, maxRunning.get() );
+                    break;
+                case QUEUE:
+                    // Overlapping runs are coalesced into one, run after the first one
+                    assertEquals( 2, runs.get() );
+                    assertEquals( 1, maxRunning.get() );
+                    break;
+                default:
+                    assertEquals( 3, runs.get() );
+                    assertEquals( 2, maxRunning.get() );
+            }
+            assertTrue( future.cancel( true ) );
+            assertTrue( future.isCancelled() );
+            assertNull( executor.next() );
+        }
+    }
+
+    @Test
+    public void testFailingTaskStopsRuns()
+        throws InterruptedException
+    {
+        ManualExecutor executor = new ManualExecutor();
+        final AtomicInteger runs = new AtomicInteger();
+        ScheduledFuture<?> future = executor.cron().schedule( () ->
+        {
+            runs.incrementAndGet();
+            throw new IllegalStateException( "Failing task" );
+        }, new CronSchedule( "* * * * * *" ) );
+        assertEquals( 750, future.getDelay( TimeUnit.MILLISECONDS ) );
+        executor.next().run();
+        assertTrue( future.isDone() );
+        try
+        {
+            future.get();
+            fail( "Failing task completed normally" );
+        }
+        catch( ExecutionException expected )
+        {
+            assertTrue( expected.getCause() instanceof IllegalStateException );
+        }
+        assertNull( executor.next() );
+        assertEquals( 1, runs.get() );
+    }
+
+    @Test
+    public void testRejectedNextRunStillRunsCurrentOne()
+        throws InterruptedException
+    {
+        ManualExecutor executor = new ManualExecutor();
+        AtomicInteger runs = new AtomicInteger();
+        ScheduledFuture<?> future = executor.cron().schedule( runs::incrementAndGet,
+                                                              new CronSchedule( "* * * * * *" ) );
+        Runnable trigger = executor.next();
+        // The trigger was accepted before shutting down but the executor rejects the next one
+        executor.shutdown();
+        trigger.run();
+        assertEquals( 1, runs.get() );
+        assertTrue( future.isDone() );
+        try
+        {
+            future.get();
+            fail( "Rejected trigger completed normally" );
+        }
+        catch( ExecutionException expected )
+        {
+            assertTrue( expected.getCause() instanceof RejectedExecutionException );
+        }
+    }
+
+    @Test
+    public void testLastRunCompletesFuture()
+        throws InterruptedException, ExecutionException
+    {
+        for( CronOverlapPolicy policy : CronOverlapPolicy.values() )
+        {
+            ManualExecutor executor = new ManualExecutor();
+            AtomicInteger runs = new AtomicInteger();
+            CronSchedule once = new CronSchedule( "32 15 10 10 3 ? 2014" );
+            ScheduledFuture<?> future = executor.cron().schedule( runs::incrementAndGet, once, policy );
+            assertFalse( future.isDone() );
+            executor.next().run();
+            assertTrue( policy.name(), future.isDone() );
+            assertEquals( null, future.get() );
+            assertEquals( policy.name(), 1, runs.get() );
+            assertNull( executor.next() );
+        }
+    }
+
+    /**
+     * Executor whose delayed tasks only run when the test fires them, see {@link #next()}, with its own clock
+     * starting on 2014-03-10T10:15:30.250Z.
+     */
+    private static final class ManualExecutor
+        extends AbstractExecutorService
+        implements ScheduledExecutorService
+    {
+        private final List<ManualFuture> scheduled = Collections.synchronizedList( new ArrayList<ManualFuture>() );
+        private volatile long millis = Instant.parse( "2014-03-10T10:15:30.250Z" ).toEpochMilli();
+        private volatile boolean shutdown;
+
+        private CronScheduledExecutor cron()
+        {
+            return new CronScheduledExecutor( this, ZoneOffset.UTC, () -> millis );
+        }
+
+        /**
+         * Remove the earliest delayed task not cancelled and move the clock to its time, it is up to the test to run
+         * it, on the thread of its choice.
+         *
+         * @return The delayed task, null if there is none
+         */
+        private Runnable next()
+        {
+            synchronized( scheduled )
+            {
+                ManualFuture earliest = null;
+                for( Iterator<ManualFuture> it = scheduled.iterator(); it.hasNext(); )
+                {
+                    ManualFuture future = it.next();
+                    if( future.cancelled )
+                    {
+                        it.remove();
+                    }
+                    else if( earliest == null || future.due < earliest.due )
+                    {
+                        earliest = future;
+                    }
+                }
+                if( earliest == null )
+                {
+                    return null;
+                }
+                scheduled.remove( earliest );
+                millis = earliest.due;
+                return earliest.command;
+            }
+        }
+
+        @Override
+        public ScheduledFuture<?> schedule( Runnable command, long delay, TimeUnit unit )
+        {
+            if( shutdown )
+            {
+                throw new RejectedExecutionException( "Shut down" );
+            }
+            ManualFuture future = new ManualFuture( command, millis + unit.toMillis( delay ) );
+            scheduled.add( future );
+            return future;
+        }
+
+        @Override
+        public <V> ScheduledFuture<V> schedule( Callable<V> callable, long delay, TimeUnit unit )
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public ScheduledFuture<?> scheduleAtFixedRate( Runnable command, long initialDelay, long period,
+                                                       TimeUnit unit )
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public ScheduledFuture<?> scheduleWithFixedDelay( Runnable command, long initialDelay, long delay,
+                                                          TimeUnit unit )
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void execute( Runnable command )
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void shutdown()
+        {
+            shutdown = true;
+        }
+
+        @Override
+        public List<Runnable> shutdownNow()
+        {
+            shutdown = true;
+            return Collections.emptyList();
+        }
+
+        @Override
+        public boolean isShutdown()
+        {
+            return shutdown;
+        }
+
+        @Override
+        public boolean isTerminated()
+        {
+            return shutdown;
+        }
+
+        @Override
+        public boolean awaitTermination( long timeout, TimeUnit unit )
+        {
+            return shutdown;
+        }
+
+        private final class ManualFuture
+            implements ScheduledFuture<Object>
+        {
+            private final Runnable command;
+            private final long due;
+            private volatile boolean cancelled;
+
+            private ManualFuture( Runnable command, long due )
+            {
+                this.command = command;
+                this.due = due;
+            }
+
+            @Override
+            public long getDelay( TimeUnit unit )
+            {
+                return unit.convert( due - millis, TimeUnit.MILLISECONDS );
+            }
+
+            @Override
+            public int compareTo( Delayed other )
+            {
+                return Long.compare( getDelay( TimeUnit.MILLISECONDS ), other.getDelay( TimeUnit.MILLISECONDS ) );
+            }
+
+            @Override
+            public boolean cancel( boolean mayInterruptIfRunning )
+            {
+                cancelled = true;
+                return true;
+            }
+
+            @Override
+            public boolean isCancelled()
+            {
+                return cancelled;
+            }
+
+            @Override
+            public boolean isDone()
+            {
+                return cancelled;
+            }
+
+            @Override
+            public Object get()
+            {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public Object get( long timeout, TimeUnit unit )
+            {
+                throw new UnsupportedOperationException();
+            }
+        }
+    }
+}
@@ -0,0 +1,443 @@
+/*
+ * Copyright (c) 2014, Paul Merlin. All Rights Reserved.
+ *
+ * Licensed  under the  Apache License,  Version 2.0  (the "License");
+ * you may not use  this file  except in  compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed  under the  License is distributed on an "AS IS" BASIS,
+ * WITHOUT  WARRANTIES OR CONDITIONS  OF ANY KIND, either  express  or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codeartisans.sked.cron;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.junit.Assume.assumeFalse;
+import static org.junit.Assume.assumeTrue;
+
+public class CronSchedulerTest
+{
+    @Test
+    public void testTimingWheel()
+    {
+        long start = 1394446530L; // 2014-03-10T10:15:30Z
+        CronTimingWheel wheel = new CronTimingWheel( start );
+        Random random = new Random( 42 );
+        List<CronTimer> timers = new ArrayList<CronTimer>();
+        for( long delta : new long[]
+        {
+            0, 1, 255, 256, 65536, 70000, 1L << 24, 1L << 33
+        } )
+        {
+            CronTimer timer = new CronTimer();
+            wheel.add( timer, start + delta );
+            timers.add( timer );
+        }
+        for( int idx = 0; idx < 1000; idx++ )
+        {
+            CronTimer timer = new CronTimer();
+            wheel.add( timer, start + 1 + random.nextInt( 1 << 20 ) );
+            timers.add( timer );
+        }
+        CronTimer removed = timers.remove( timers.size() - 1 );
+        assertTrue( wheel.remove( removed ) );
+        assertFalse( wheel.remove( removed ) );
+        assertEquals( timers.size(), wheel.size() );
+
+        final List<CronTimer> expired = new ArrayList<CronTimer>();
+        final long[] last = new long[]
+        {
+            start
+        };
+        wheel.advance( start + ( 1L << 34 ), timer ->
+                   {
+                       assertEquals( Math.max( timer.deadline, start ), wheel.now() );
+                       assertTrue( timer.deadline >= last[0] );
+                       last[0] = timer.deadline;
+                       expired.add( timer );
+                   } );
+        assertEquals( timers.size(), expired.size() );
+        assertEquals( 0, wheel.size() );
+        assertEquals( CronSchedule.NEVER, wheel.nextEventTime() );
+        assertEquals( start + ( 1L << 34 ), wheel.now() );
+    }
+
+    @Test
+    public void testScheduler()
+        throws InterruptedException
+    {
+        ManualScheduler manual = new ManualScheduler( Runnable::run, 1 );
+        try
+        {
+            final CountDownLatch latch = new CountDownLatch( 2 );
+            final AtomicInteger runs = new AtomicInteger();
+            CronJob job = manual.scheduler.schedule( new CronSchedule( "* * * * * *" ), () ->
+                                                 {
+                                                     runs.incrementAndGet();
+                                                     latch.countDown();
+                                                 } );
+            manual.tickUntil( latch );
+            job.cancel();
+            manual.settle();
+            int cancelledRuns = runs.get();
+            manual.settle();
+            assertEquals( cancelledRuns, runs.get() );
+
+            final CountDownLatch rescheduled = new CountDownLatch( 1 );
+            CronJob never = manual.scheduler.schedule( new CronSchedule( "0 0 0 1 1 ? 2099" ),
+                                                       rescheduled::countDown );
+            never.reschedule( new CronSchedule( "* * * * * *" ) );
+            manual.tickUntil( rescheduled );
+        }
+        finally
+        {
+            manual.scheduler.shutdown();
+        }
+        assertTrue( manual.scheduler.awaitTermination( 5, TimeUnit.SECONDS ) );
+    }
+
+    @Test
+    public void testExhaustedJobs()
+        throws InterruptedException
+    {
+        ManualScheduler manual = new ManualScheduler( Runnable::run, 1 );
+        try
+        {
+            CronJob past = manual.scheduler.schedule( new CronSchedule( "0 0 0 1 1 ? 2000" ), () ->
+                                                  {
+                                                  } );
+            final CountDownLatch ran = new CountDownLatch( 1 );
+            // A few seconds after the start of the manual clock
+            CronJob once = manual.scheduler.schedule( new CronSchedule( "35 15 10 10 3 ? 2014" ), ran::countDown );
+            manual.tickUntil( ran );
+            manual.settle();
+            assertTrue( past.isExhausted() );
+            assertTrue( once.isExhausted() );
+
+            final CountDownLatch rescheduled = new CountDownLatch( 1 );
+            CronJob revived = manual.scheduler.schedule( new CronSchedule( "0 0 0 1 1 ? 2000" ),
+                                                         rescheduled::countDown );
+            manual.settle();
+            assertTrue( revived.isExhausted() );
+            revived.reschedule( new CronSchedule( "* * * * * *" ) );
+            manual.tickUntil( rescheduled );
+            assertFalse( revived.isExhausted() );
+            revived.cancel();
+        }
+        finally
+        {
+            manual.scheduler.shutdown();
+        }
+        assertTrue( manual.scheduler.awaitTermination( 5, TimeUnit.SECONDS ) );
+    }
+
+    /**
+     * Scheduler evaluating schedules in UTC whose clock only moves on {@link #tick()}, starting on
+     * 2014-03-10T10:15:30Z.
+     *
+     * A sentinel job of the first shard records each second it runs. Once it ran for a second, its dispatcher has
+     * completed the previous second, that is fired its jobs and applied the registrations, cancellations and
+     * reschedulings made before the clock moved to it.
+     */
+    private static final class ManualScheduler
+    {
+        /**
+         * Ticks needed for a job registered before to have run, with some leeway for other shards.
+         */
+        private static final int MAX_TICKS = 16;
+
+        private final BlockingQueue<Long> ticks = new LinkedBlockingQueue<Long>();
+        private final CronScheduler scheduler;
+        private volatile long millis = Instant.parse( "2014-03-10T10:15:30Z" ).toEpochMilli();
+
+        private ManualScheduler( Executor executor, int shards )
+            throws InterruptedException
+        {
+            scheduler = new CronScheduler( executor, ZoneOffset.UTC, shards, () -> millis );
+            scheduler.schedule( new CronSchedule( "* * * * * *" ), () -> ticks.add( millis / 1000 ) );
+            // The sentinel may be registered after the clock moved, then it only runs from the next second
+            do
+            {
+                millis += 1000;
+                scheduler.wakeUp();
+            }
+            while( ticks.poll( 100, TimeUnit.MILLISECONDS ) == null );
+        }
+
+        /**
+         * Move the clock one second forward and wait for the sentinel to run at that second.
+         */
+        private void tick()
+            throws InterruptedException
+        {
+            millis += 1000;
+            scheduler.wakeUp();
+            long second = millis / 1000;
+            Long ticked;
+            do
+            {
+                ticked = ticks.poll( 5, TimeUnit.SECONDS );
+                assertNotNull( "Dispatcher did not reach " + second, ticked );
+            }
+            while( ticked < second );
+        }
+
+        /**
+         * Tick twice, so that the updates made before are applied and the jobs of the first tick have run.
+         */
+        private void settle()
+            throws InterruptedException
+        {
+            tick();
+            tick();
+        }
+
+        /**
+         * Tick until the given latch is released.
+         */
+        private void tickUntil( CountDownLatch latch )
+            throws InterruptedException
+        {
+            for( int tick = 0; tick < MAX_TICKS && latch.getCount() > 0; tick++ )
+            {
+                tick();
+            }
+            assertTrue( latch.await( 5, TimeUnit.SECONDS ) );
+        }
+    }
+
+    @Test
+    public void testCoalescing()
+        throws InterruptedException
+    {
+        CronTrigger daily = new CronTrigger( new CronSchedule( "@daily" ) );
+        assertEquals( daily, new CronTrigger( new CronSchedule( "0 0 0 * * *" ) ) );
+        assertEquals( daily.hashCode(), new CronTrigger( new CronSchedule( "0 0 0 * * *" ) ).hashCode() );
+        assertFalse( daily.equals( new CronTrigger( new CronSchedule( "@hourly" ) ) ) );
+
+        CronJob first = new CronJob( null, daily.schedule(), () ->
+                                 {
+                                 }, 0 );
+        CronJob second = new CronJob( null, daily.schedule(), () ->
+                                  {
+                                  }, 0 );
+        daily.add( first );
+        daily.add( second );
+        final List<Runnable> runs = new ArrayList<Runnable>();
+        daily.fire( runs::add );
+        assertEquals( 2, runs.size() );
+        daily.remove( first );
+        runs.clear();
+        daily.fire( runs::add );
+        assertEquals( 1, runs.size() );
+        assertEquals( second.runnable(), runs.get( 0 ) );
+
+        CronScheduler scheduler = new CronScheduler( Runnable::run, ZoneOffset.UTC );
+        try
+        {
+            final CountDownLatch everySecond = new CountDownLatch( 1 );
+            final CountDownLatch sameRuns = new CountDownLatch( 1 );
+            scheduler.schedule( new CronSchedule( "* * * * * *" ), everySecond::countDown );
+            scheduler.schedule( new CronSchedule( "0-59 * * * * *" ), sameRuns::countDown );
+            assertTrue( everySecond.await( 5, TimeUnit.SECONDS ) );
+            assertTrue( sameRuns.await( 5, TimeUnit.SECONDS ) );
+        }
+        finally
+        {
+            scheduler.shutdown();
+        }
+    }
+
+    @Test
+    public void testSharding()
+        throws InterruptedException
+    {
+        ForkJoinPool pool = new ForkJoinPool( 4 );
+        ManualScheduler manual = new ManualScheduler( pool, 4 );
+        try
+        {
+            final Set<Integer> ran = ConcurrentHashMap.newKeySet();
+            // Enough jobs of the same schedule for each shard to fan them out
+            final int count = 400 + 15;
+            final CountDownLatch latch = new CountDownLatch( count );
+            int id = 0;
+            for( ; id < 400; id++ )
+            {
+                final int job = id;
+                manual.scheduler.schedule( new CronSchedule( "* * * * * *" ), () ->
+                                       {
+                                           if( ran.add( job ) )
+                                           {
+                                               latch.countDown();
+                                           }
+                                       } );
+            }
+            // Distinct schedules all matching the year of the manual clock
+            for( int year = 2000; year <= 2014; year++, id++ )
+            {
+                final int job = id;
+                manual.scheduler.schedule( new CronSchedule( "* * * * * * " + year + "-2099" ), () ->
+                                       {
+                                           if( ran.add( job ) )
+                                           {
+                                               latch.countDown();
+                                           }
+                                       } );
+            }
+            manual.tickUntil( latch );
+            assertEquals( count, ran.size() );
+        }
+        finally
+        {
+            manual.scheduler.shutdown();
+            pool.shutdown();
+        }
+        assertTrue( manual.scheduler.awaitTermination( 5, TimeUnit.SECONDS ) );
+    }
+
+    @Test
+    public void testMaxConcurrency()
+        throws InterruptedException
+    {
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger maxRunning = new AtomicInteger();
+        CronJob job = new CronJob( null, new CronSchedule( "@hourly" ), () ->
+                               {
+                                   maxRunning.accumulateAndGet( running.incrementAndGet(), Math::max );
+                                   try
+                                   {
+                                       Thread.sleep( 20 );
+                                   }
+                                   catch( InterruptedException ex )
+                                   {
+                                       Thread.currentThread().interrupt();
+                                   }
+                                   running.decrementAndGet();
+                               }, 2 );
+        ExecutorService executor = Executors.newFixedThreadPool( 8 );
+        for( int idx = 0; idx < 32; idx++ )
+        {
+            executor.execute( job.runnable() );
+        }
+        executor.shutdown();
+        assertTrue( executor.awaitTermination( 5, TimeUnit.SECONDS ) );
+        assertEquals( 2, maxRunning.get() );
+    }
+
+    @Test
+    public void testMaxConcurrencyOnForkJoinPool()
+        throws InterruptedException
+    {
+        CountDownLatch holding = new CountDownLatch( 1 );
+        CountDownLatch release = new CountDownLatch( 1 );
+        AtomicInteger boundedRuns = new AtomicInteger();
+        CronJob bounded = new CronJob( null, new CronSchedule( "@hourly" ), () ->
+                                   {
+                                       if( boundedRuns.incrementAndGet() == 1 )
+                                       {
+                                           holding.countDown();
+                                           try
+                                           {
+                                               release.await();
+                                           }
+                                           catch( InterruptedException ex )
+                                           {
+                                               Thread.currentThread().interrupt();
+                                           }
+                                       }
+                                   }, 1 );
+        CountDownLatch unboundedRan = new CountDownLatch( 1 );
+        CronJob unbounded = new CronJob( null, new CronSchedule( "@hourly" ), unboundedRan::countDown, 0 );
+        ForkJoinPool pool = new ForkJoinPool( 2 );
+        try
+        {
+            // The permit is held outside the pool, all later bounded runs wait for it on the pool workers
+            new Thread( bounded.runnable() ).start();
+            assertTrue( holding.await( 5, TimeUnit.SECONDS ) );
+            for( int idx = 0; idx < 8; idx++ )
+            {
+                pool.execute( bounded.runnable() );
+            }
+            pool.execute( unbounded.runnable() );
+            assertTrue( unboundedRan.await( 5, TimeUnit.SECONDS ) );
+            release.countDown();
+            pool.shutdown();
+            assertTrue( pool.awaitTermination( 5, TimeUnit.SECONDS ) );
+            assertEquals( 9, boundedRuns.get() );
+        }
+        finally
+        {
+            release.countDown();
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testVirtualThreads()
+        throws Throwable
+    {
+        if( Runtime.version().feature() >= 21 )
+        {
+            assertTrue( CronExecutors.isVirtualThreadSupported() );
+        }
+        assumeTrue( "Virtual threads are not supported by this runtime", CronExecutors.isVirtualThreadSupported() );
+        // Resolved at runtime as in CronExecutors, so that tests still compile for older runtimes
+        MethodHandle isVirtual = MethodHandles.publicLookup().findVirtual( Thread.class, "isVirtual",
+                                                                          MethodType.methodType( boolean.class ) );
+        ExecutorService executor = CronExecutors.newVirtualThreadPerTaskExecutor();
+        try
+        {
+            Thread runner = executor.submit( Thread::currentThread ).get();
+            assertTrue( (boolean) isVirtual.invokeExact( runner ) );
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testVirtualThreadsUnsupported()
+    {
+        assumeFalse( "Virtual threads are supported by this runtime", CronExecutors.isVirtualThreadSupported() );
+        try
+        {
+            CronExecutors.newVirtualThreadPerTaskExecutor();
+            fail( "Virtual threads are not supported by this runtime" );
+        }
+        catch( UnsupportedOperationException expected )
+        {
+        }
+    }
+}